@@ -2,6 +2,7 @@ plugins {
     id("org.zaproxy.add-on") version "0.13.1"
     id("com.diffplug.spotless") version "8.6.0"
     id("com.github.ben-manes.versions") version "0.54.0"
+    id("me.champeau.jmh") version "0.7.3"
     java
 }
 
@@ -22,6 +23,8 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testImplementation("commons-configuration:commons-configuration:1.10")
     testImplementation("org.zaproxy:zap:2.16.1")
+
+    jmh("org.zaproxy:zap:2.16.1")
 }
 
 zapAddOn {
@@ -35,3 +38,12 @@ zapAddOn {
 tasks.test {
     useJUnitPlatform()
 }
+
+jmh {
+    jmhVersion.set("1.37")
+    // ops/s from the benchmark mode, allocation rate from the GC profiler
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // e.g. ./gradlew jmh -Pjmh.includes=TrafficBenchmark
+    (project.findProperty("jmh.includes") as String?)?.let { includes.add(it) }
+}
@@ -0,0 +1,51 @@
+package com.github.double16;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.parosproxy.paros.core.scanner.Alert;
+
+/**
+ * Rendering an alert into the markdown posted to {@code /findings}, with the per-rule sections cached as they are
+ * during a scan and with an empty cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindingBenchmark {
+
+    @Param({"false", "true"})
+    public boolean full;
+
+    private final FindingRenderer renderer = new FindingRenderer();
+    private Alert alert;
+
+    @Setup
+    public void setUp() {
+        alert = BenchmarkMessages.alert(40012, full);
+    }
+
+    @Benchmark
+    public String render() {
+        return renderer.render(alert);
+    }
+
+    @Benchmark
+    public String renderUncached() {
+        renderer.clear();
+        return renderer.render(alert);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.double16;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.parosproxy.paros.network.HttpMalformedHeaderException;
+import org.parosproxy.paros.network.HttpMessage;
+
+/**
+ * The per-message work: the content type filter on ZAP's sender thread, capturing the message into a
+ * {@link TrafficEntry}, and serializing it on the forwarder's sender thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrafficBenchmark {
+
+    @Param({"SMALL_JSON", "LARGE_HTML", "MANY_HEADERS"})
+    public BenchmarkMessages.Shape shape;
+
+    private final CaptureConfig config = new ShyHurricaneOptionsParam().getCaptureConfig();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+    private HttpMessage msg;
+    private TrafficEntry entry;
+
+    @Setup
+    public void setUp() throws HttpMalformedHeaderException {
+        msg = BenchmarkMessages.message(shape);
+        entry = TrafficEntry.capture(msg, config);
+    }
+
+    @Benchmark
+    public void shouldSkip(Blackhole bh) {
+        for (String contentType : BenchmarkMessages.CONTENT_TYPES) {
+            bh.consume(ExtensionShyHurricaneForwarder.shouldSkip(contentType));
+        }
+    }
+
+    @Benchmark
+    public TrafficEntry capture() {
+        return TrafficEntry.capture(msg, config);
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        out.reset();
+        TrafficEntryWriter.write(entry, out);
+        return out.size();
+    }
+
+    /**
+     * Everything that happens to a forwarded message except the post.
+     */
+    @Benchmark
+    public int captureAndWrite() throws IOException {
+        out.reset();
+        TrafficEntryWriter.write(TrafficEntry.capture(msg, config), out);
+        return out.size();
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.double16;
+
+/**
+ * What to do with captured traffic when the send queue is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Make ZAP's sender thread wait for space, up to the block timeout, then drop the entry.
+     */
+    BLOCK,
+    /**
+     * Drop the entry that doesn't fit.
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest queued entry to make space.
+     */
+    DROP_OLDEST,
+    /**
+     * Write the entry to the disk spool, it's sent when the spool is replayed. Dropped if the spool is disabled or
+     * full.
+     */
+    SPILL_TO_DISK;
+
+    static BackpressurePolicy parse(String value, BackpressurePolicy defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.double16;
+
+/**
+ * What to forward when a request or response body is larger than the configured maximum.
+ */
+public enum BodyLimitPolicy {
+    /**
+     * Forward the first bytes of the body, up to the maximum.
+     */
+    TRUNCATE,
+    /**
+     * Forward the first and last halves of the maximum, so both the start of a document and its closing parts are kept.
+     */
+    HEAD_TAIL,
+    /**
+     * Forward only a SHA-256 hash of the full body.
+     */
+    HASH;
+
+    static BodyLimitPolicy parse(String value, BodyLimitPolicy defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
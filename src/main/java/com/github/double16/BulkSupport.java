@@ -0,0 +1,84 @@
+package com.github.double16;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the servers that can't process NDJSON bodies, so documents are posted to them one per request. A server
+ * is probed with NDJSON again after {@link #REPROBE_MILLIS}, it may have been upgraded since. Times are passed in so
+ * that tests don't depend on the clock.
+ * <p>
+ * 404, 405, 415 and 501 mean the server has no bulk endpoint. 400 and 422 may also mean one of the documents is bad,
+ * so they only count when the documents are then accepted one by one.
+ */
+class BulkSupport {
+
+    static final long REPROBE_MILLIS = 10 * 60_000L;
+
+    /**
+     * Status codes returned by servers that can't process an NDJSON body.
+     */
+    static final Set<Integer> UNSUPPORTED_STATUS = Set.of(404, 405, 415, 501);
+    /**
+     * Status codes returned for an NDJSON body that is either not understood or holds a bad document.
+     */
+    static final Set<Integer> REJECTED_STATUS = Set.of(400, 422);
+
+    /**
+     * Stands in for a null server, the sink doesn't tell servers apart.
+     */
+    private static final Object ANY_SERVER = new Object();
+
+    private final Map<Object, Long> unsupportedSince = new ConcurrentHashMap<>();
+
+    /**
+     * @return true if the status of an NDJSON post means the documents have to be posted one by one
+     */
+    static boolean isRejected(int status) {
+        return UNSUPPORTED_STATUS.contains(status) || REJECTED_STATUS.contains(status);
+    }
+
+    /**
+     * @param server from {@link IndexForwarder.Sink#server(Object)}, may be null
+     * @return false if the server is known not to support NDJSON and isn't due to be probed again
+     */
+    boolean isSupported(Object server, long nowMillis) {
+        Object key = key(server);
+        Long since = unsupportedSince.get(key);
+        if (since == null) {
+            return true;
+        }
+        if (nowMillis - since < REPROBE_MILLIS) {
+            return false;
+        }
+        unsupportedSince.remove(key, since);
+        return true;
+    }
+
+    /**
+     * Records the outcome of posting the documents of a rejected NDJSON body one by one.
+     *
+     * @param status   the status of the NDJSON post, see {@link #isRejected(int)}
+     * @param accepted true if every document was accepted on its own
+     * @return true if the server is now taken not to support NDJSON
+     */
+    boolean rejected(Object server, int status, boolean accepted, long nowMillis) {
+        if (!UNSUPPORTED_STATUS.contains(status) && !accepted) {
+            return false;
+        }
+        unsupportedSince.put(key(server), nowMillis);
+        return true;
+    }
+
+    /**
+     * @return true if no server is known not to support NDJSON
+     */
+    boolean isSupportedEverywhere() {
+        return unsupportedSince.isEmpty();
+    }
+
+    private static Object key(Object server) {
+        return server != null ? server : ANY_SERVER;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.double16;
+
+import java.util.BitSet;
+
+/**
+ * Immutable snapshot of the options read for every message on ZAP's sender threads. It's rebuilt and published
+ * whenever one of them is loaded or set, so the listener reads all of them with one volatile load and never parses
+ * the initiator CSV.
+ */
+final class CaptureConfig {
+
+    private final boolean onlyInScope;
+    private final boolean initiatorsAll;
+    /**
+     * Never modified after construction.
+     */
+    private final BitSet initiators;
+    private final InitiatorLimits initiatorLimits;
+    private final int requestBodyMaxBytes;
+    private final int responseBodyMaxBytes;
+    private final BodyLimitPolicy bodyLimitPolicy;
+    private final boolean trafficDedupEnabled;
+    private final boolean nearDupEnabled;
+    private final int indexQueueCapacity;
+    private final BackpressurePolicy backpressurePolicy;
+
+    private CaptureConfig(ShyHurricaneOptionsParam param) {
+        this.onlyInScope = param.isOnlyInScope();
+        this.initiatorsAll = param.isInitiatorsAll();
+        this.initiators = parseInitiators(param.getInitiatorsSelectedCsv());
+        this.initiatorLimits = InitiatorLimits.parse(param.getInitiatorLimitsCsv());
+        this.requestBodyMaxBytes = param.getRequestBodyMaxBytes();
+        this.responseBodyMaxBytes = param.getResponseBodyMaxBytes();
+        this.bodyLimitPolicy = param.getBodyLimitPolicy();
+        this.trafficDedupEnabled = param.isTrafficDedupEnabled();
+        this.nearDupEnabled = param.isNearDupEnabled();
+        this.indexQueueCapacity = param.getIndexQueueCapacity();
+        this.backpressurePolicy = param.getBackpressurePolicy();
+    }
+
+    static CaptureConfig of(ShyHurricaneOptionsParam param) {
+        return new CaptureConfig(param);
+    }
+
+    /**
+     * Parses a CSV of initiator IDs, ignoring blank, negative and non-numeric entries.
+     */
+    static BitSet parseInitiators(String csv) {
+        BitSet set = new BitSet();
+        if (csv == null) {
+            return set;
+        }
+        int start = 0;
+        while (start <= csv.length()) {
+            int end = csv.indexOf(',', start);
+            if (end < 0) {
+                end = csv.length();
+            }
+            String value = csv.substring(start, end).trim();
+            if (!value.isEmpty()) {
+                try {
+                    int id = Integer.parseInt(value);
+                    if (id >= 0) {
+                        set.set(id);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // ignore bad entries
+                }
+            }
+            start = end + 1;
+        }
+        return set;
+    }
+
+    boolean isOnlyInScope() {
+        return onlyInScope;
+    }
+
+    boolean isInitiatorsAll() {
+        return initiatorsAll;
+    }
+
+    boolean isInitiatorSelected(int initiator) {
+        return initiatorsAll || (initiator >= 0 && initiators.get(initiator));
+    }
+
+    InitiatorLimits getInitiatorLimits() {
+        return initiatorLimits;
+    }
+
+    int getRequestBodyMaxBytes() {
+        return requestBodyMaxBytes;
+    }
+
+    int getResponseBodyMaxBytes() {
+        return responseBodyMaxBytes;
+    }
+
+    BodyLimitPolicy getBodyLimitPolicy() {
+        return bodyLimitPolicy;
+    }
+
+    boolean isTrafficDedupEnabled() {
+        return trafficDedupEnabled;
+    }
+
+    boolean isNearDupEnabled() {
+        return nearDupEnabled;
+    }
+
+    int getIndexQueueCapacity() {
+        return indexQueueCapacity;
+    }
+
+    BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+}
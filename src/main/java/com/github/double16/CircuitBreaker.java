@@ -0,0 +1,115 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending to an endpoint after consecutive failures. While open, requests fail immediately. After the open
+ * time a single probe request is let through, its outcome closes the breaker or opens it again.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Thrown instead of sending while the breaker is open.
+     */
+    static class OpenException extends IOException {
+        OpenException(String name) {
+            super("Circuit open for " + name);
+        }
+    }
+
+    private final String name;
+    private final ShyHurricaneOptionsParam param;
+    private final LongSupplier nanoTime;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedNanos;
+    private boolean probing;
+
+    CircuitBreaker(String name, ShyHurricaneOptionsParam param) {
+        this(name, param, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock of the open time, replaced by tests
+     */
+    CircuitBreaker(String name, ShyHurricaneOptionsParam param, LongSupplier nanoTime) {
+        this.name = name;
+        this.param = param;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return true if a request may be sent, the caller must report the outcome
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoTime.getAsLong() - openedNanos < TimeUnit.MILLISECONDS.toNanos(param.getBreakerOpenMillis())) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.err.println("[ShyHurricaneForwarder] " + name + " is available again");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    synchronized void onFailure() {
+        probing = false;
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED && ++failures >= Math.max(1, param.getBreakerFailureThreshold())) {
+            System.err.println("[ShyHurricaneForwarder] " + name + " failed " + failures
+                    + " times, pausing sends for " + param.getBreakerOpenMillis() + "ms");
+            open();
+        }
+    }
+
+    /**
+     * @return true if {@link #tryAcquire()} would let a request through now, without taking the probe
+     */
+    synchronized boolean isAvailable() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return nanoTime.getAsLong() - openedNanos >= TimeUnit.MILLISECONDS.toNanos(param.getBreakerOpenMillis());
+            default:
+                return !probing;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedNanos = nanoTime.getAsLong();
+        failures = 0;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.double16;
+
+/**
+ * Content-Encoding applied to bodies posted to the ShyHurricane server.
+ */
+public enum Compression {
+    NONE(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the Content-Encoding header value, null for {@link #NONE}
+     */
+    String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    static Compression parse(String value, Compression defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only spool on disk for entries that couldn't be delivered to the server. Entries are replayed in the order
+ * they were written once the server accepts them again.
+ * <p>
+ * The spool is a directory of numbered segment files. Each record is a 4 byte payload length, a 4 byte CRC32 of the
+ * kind and payload, a 1 byte kind, then the payload. The segment being written is rotated once it reaches the
+ * segment size, and fully replayed segments are deleted. The replay position is kept in a cursor file so entries
+ * aren't sent again after a restart. When the spool reaches its size limit the oldest segment is discarded.
+ * <p>
+ * Writes are not forced to disk per record, the OS flushes them. A record torn by a crash fails its checksum and
+ * the rest of that segment is skipped.
+ */
+class DiskSpool {
+
+    static final int KIND_INDEX = 1;
+    static final int KIND_FINDING = 2;
+
+    /**
+     * Delivers a replayed record.
+     */
+    @FunctionalInterface
+    interface RecordHandler {
+        /**
+         * @return true if the record was delivered, false to stop replaying and retry this record later
+         */
+        boolean deliver(int kind, byte[] data, int offset, int length) throws Exception;
+    }
+
+    static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+    private static final int HEADER_BYTES = 9;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int REPLAY_BATCH_RECORDS = 64;
+    private static final int REPLAY_BATCH_BYTES = 1024 * 1024;
+
+    private static final class Segment {
+        final long seq;
+        final Path path;
+        long size;
+
+        Segment(long seq, Path path, long size) {
+            this.seq = seq;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private final ShyHurricaneOptionsParam param;
+    private final Supplier<Path> directory;
+    private final long segmentBytes;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private final CRC32 crc = new CRC32();
+    /**
+     * Serializes replays. Held while records are delivered, the spool's own lock is not.
+     */
+    private final Object replayLock = new Object();
+    /**
+     * The records of the batch being replayed, only used under {@link #replayLock}.
+     */
+    private byte[] batch = new byte[64 * 1024];
+    private final int[] batchKinds = new int[REPLAY_BATCH_RECORDS];
+    private final int[] batchOffsets = new int[REPLAY_BATCH_RECORDS];
+    private final int[] batchLengths = new int[REPLAY_BATCH_RECORDS];
+    /**
+     * The segment and position the batch was read from.
+     */
+    private long batchSeq;
+    private long batchStart;
+    private Path dir;
+    private FileChannel writer;
+    private FileChannel reader;
+    private long readerSeq = -1;
+    /**
+     * Replay position in the first segment.
+     */
+    private long readOffset;
+    private long totalBytes;
+    private long dropped;
+    private boolean opened;
+    private boolean failed;
+
+    /**
+     * @param directory resolved on first use, the ZAP home directory isn't known when the extension is created
+     */
+    DiskSpool(ShyHurricaneOptionsParam param, Supplier<Path> directory) {
+        this(param, directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    DiskSpool(ShyHurricaneOptionsParam param, Supplier<Path> directory, long segmentBytes) {
+        this.param = param;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Writes a record to the end of the spool.
+     *
+     * @return false if the spool is disabled, full or can't be written
+     */
+    synchronized boolean append(int kind, byte[] data, int offset, int length) {
+        if (!param.isSpoolEnabled() || !ensureOpen()) {
+            return false;
+        }
+        long recordBytes = HEADER_BYTES + (long) length;
+        long maxBytes = param.getSpoolMaxMegabytes() * 1024L * 1024L;
+        try {
+            if (segments.getLast().size >= segmentBytes) {
+                rotate();
+            }
+            while (totalBytes + recordBytes > maxBytes && segments.size() > 1) {
+                Segment oldest = segments.getFirst();
+                System.err.println("[ShyHurricaneForwarder] Spool full, discarding " + (oldest.size - readOffset)
+                        + " bytes of the oldest entries");
+                deleteFirst();
+            }
+            if (totalBytes + recordBytes > maxBytes) {
+                if (dropped++ % 1000 == 0) {
+                    System.err.println("[ShyHurricaneForwarder] Spool full, dropped " + dropped + " entries");
+                }
+                return false;
+            }
+
+            crc.reset();
+            crc.update(kind);
+            crc.update(data, offset, length);
+            header.clear();
+            header.putInt(length).putInt((int) crc.getValue()).put((byte) kind).flip();
+            ByteBuffer[] record = {header, ByteBuffer.wrap(data, offset, length)};
+            while (record[1].hasRemaining() || header.hasRemaining()) {
+                writer.write(record);
+            }
+            segments.getLast().size += recordBytes;
+            totalBytes += recordBytes;
+            return true;
+        } catch (IOException e) {
+            System.err.println("[ShyHurricaneForwarder] Error writing spool: " + e.getMessage());
+            // a partial record fails its checksum, start a new segment so the following records stay readable
+            try {
+                Segment last = segments.getLast();
+                totalBytes += writer.size() - last.size;
+                last.size = writer.size();
+                rotate();
+            } catch (IOException | RuntimeException ignored) {
+                // the next append will try again
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Hands records to the handler in order, until it returns false, it throws or the spool is empty.
+     * <p>
+     * Records are read in batches under the spool's lock and handed to the handler outside it, so appends don't wait
+     * for the server. The replay position only moves past a batch's delivered records afterward, unless the spool
+     * discarded their segment meanwhile because it was full. Only one replay runs at a time.
+     *
+     * @return the number of records delivered
+     */
+    int replay(RecordHandler handler, int maxRecords) throws Exception {
+        synchronized (replayLock) {
+            int delivered = 0;
+            while (delivered < maxRecords) {
+                int count = readBatch(maxRecords - delivered);
+                if (count == 0) {
+                    break;
+                }
+                int accepted = 0;
+                try {
+                    while (accepted < count && handler.deliver(
+                            batchKinds[accepted], batch, batchOffsets[accepted], batchLengths[accepted])) {
+                        accepted++;
+                    }
+                } finally {
+                    commit(accepted);
+                }
+                delivered += accepted;
+                if (accepted < count) {
+                    break;
+                }
+            }
+            return delivered;
+        }
+    }
+
+    /**
+     * Reads the next records of the first segment into {@link #batch}, up to {@link #REPLAY_BATCH_BYTES} or at least
+     * one record. Replayed and corrupt segments in the way are deleted.
+     *
+     * @return the number of records read
+     */
+    private synchronized int readBatch(int maxRecords) throws IOException {
+        if (!ensureOpen()) {
+            return 0;
+        }
+        long startSeq = segments.getFirst().seq;
+        long startOffset = readOffset;
+        try {
+            int count = 0;
+            int size = 0;
+            long offset = readOffset;
+            while (count < maxRecords && count < batchKinds.length) {
+                Segment segment = segments.getFirst();
+                if (offset + HEADER_BYTES > segment.size) {
+                    if (count > 0 || segment == segments.getLast()) {
+                        break;
+                    }
+                    if (offset < segment.size) {
+                        System.err.println("[ShyHurricaneForwarder] Truncated record at the end of spool segment " + segment.path);
+                    }
+                    deleteFirst();
+                    offset = 0;
+                    continue;
+                }
+
+                FileChannel channel = reader(segment);
+                header.clear();
+                readFully(channel, header, offset);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                int kind = header.get();
+                boolean valid = length >= 0 && length <= MAX_RECORD_BYTES
+                        && offset + HEADER_BYTES + length <= segment.size;
+                if (valid && count > 0 && size + length > REPLAY_BATCH_BYTES) {
+                    break;
+                }
+                if (valid) {
+                    if (batch.length < size + length) {
+                        batch = Arrays.copyOf(batch, Math.max(size + length, batch.length * 2));
+                    }
+                    readFully(channel, ByteBuffer.wrap(batch, size, length), offset + HEADER_BYTES);
+                    crc.reset();
+                    crc.update(kind);
+                    crc.update(batch, size, length);
+                    valid = (int) crc.getValue() == checksum;
+                }
+                if (!valid) {
+                    if (count > 0) {
+                        // replay what was read first, the next batch starts at the bad record
+                        break;
+                    }
+                    System.err.println("[ShyHurricaneForwarder] Corrupt record in spool segment " + segment.path
+                            + ", skipping the rest of the segment");
+                    if (segment == segments.getLast()) {
+                        rotate();
+                    }
+                    deleteFirst();
+                    offset = 0;
+                    continue;
+                }
+
+                batchKinds[count] = kind;
+                batchOffsets[count] = size;
+                batchLengths[count] = length;
+                count++;
+                size += length;
+                offset += HEADER_BYTES + length;
+            }
+            batchSeq = segments.getFirst().seq;
+            batchStart = readOffset;
+            return count;
+        } finally {
+            if (segments.getFirst().seq != startSeq || readOffset != startOffset) {
+                writeCursor();
+            }
+        }
+    }
+
+    /**
+     * Moves the replay position past the first {@code accepted} records of the batch.
+     */
+    private synchronized void commit(int accepted) {
+        if (accepted == 0 || !opened || segments.getFirst().seq != batchSeq || readOffset != batchStart) {
+            // the segment was discarded while the batch was delivered
+            return;
+        }
+        for (int i = 0; i < accepted; i++) {
+            readOffset += HEADER_BYTES + batchLengths[i];
+        }
+        writeCursor();
+    }
+
+    /**
+     * @return true if there is nothing to replay
+     */
+    synchronized boolean isEmpty() {
+        if (!ensureOpen()) {
+            return true;
+        }
+        return segments.size() == 1 && readOffset >= segments.getFirst().size;
+    }
+
+    /**
+     * @return bytes on disk that haven't been replayed yet
+     */
+    synchronized long pendingBytes() {
+        return opened ? totalBytes - readOffset : 0;
+    }
+
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    synchronized void close() {
+        if (!opened) {
+            return;
+        }
+        try {
+            writer.force(false);
+        } catch (IOException e) {
+            System.err.println("[ShyHurricaneForwarder] Error syncing spool: " + e.getMessage());
+        }
+        writeCursor();
+        closeQuietly(writer);
+        closeQuietly(reader);
+        writer = null;
+        reader = null;
+        readerSeq = -1;
+        segments.clear();
+        totalBytes = 0;
+        readOffset = 0;
+        opened = false;
+    }
+
+    private boolean ensureOpen() {
+        if (opened) {
+            return true;
+        }
+        if (failed || !param.isSpoolEnabled()) {
+            return false;
+        }
+        try {
+            dir = directory.get();
+            Files.createDirectories(dir);
+            List<Long> seqs = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        seqs.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // not ours
+                    }
+                }
+            }
+            Collections.sort(seqs);
+
+            long cursorSeq = -1;
+            long cursorOffset = 0;
+            Path cursor = dir.resolve(CURSOR_FILE);
+            if (Files.exists(cursor)) {
+                String[] parts = Files.readString(cursor, StandardCharsets.US_ASCII).trim().split(" ");
+                try {
+                    cursorSeq = Long.parseLong(parts[0]);
+                    cursorOffset = Long.parseLong(parts[1]);
+                } catch (RuntimeException e) {
+                    System.err.println("[ShyHurricaneForwarder] Ignoring invalid spool cursor " + cursor);
+                }
+            }
+
+            for (long seq : seqs) {
+                Path path = segmentPath(seq);
+                if (seq < cursorSeq) {
+                    // replayed before the segment could be deleted
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                long size = Files.size(path);
+                segments.addLast(new Segment(seq, path, size));
+                totalBytes += size;
+            }
+            readOffset = !segments.isEmpty() && segments.getFirst().seq == cursorSeq ? cursorOffset : 0;
+
+            // never append to a segment from an earlier run, it may end with a torn record
+            openWriter(segments.isEmpty() ? Math.max(1, cursorSeq) : segments.getLast().seq + 1);
+            opened = true;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[ShyHurricaneForwarder] Disk spool unavailable: " + e.getMessage());
+            failed = true;
+            closeQuietly(writer);
+            writer = null;
+            segments.clear();
+            totalBytes = 0;
+            return false;
+        }
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    private void openWriter(long seq) throws IOException {
+        Path path = segmentPath(seq);
+        writer = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        long size = writer.size();
+        segments.addLast(new Segment(seq, path, size));
+        totalBytes += size;
+    }
+
+    private void rotate() throws IOException {
+        writer.force(false);
+        writer.close();
+        openWriter(segments.getLast().seq + 1);
+    }
+
+    /**
+     * Deletes the first segment, which is never the segment being written.
+     */
+    private void deleteFirst() throws IOException {
+        Segment first = segments.removeFirst();
+        if (readerSeq == first.seq) {
+            closeQuietly(reader);
+            reader = null;
+            readerSeq = -1;
+        }
+        Files.deleteIfExists(first.path);
+        totalBytes -= first.size;
+        readOffset = 0;
+    }
+
+    private FileChannel reader(Segment segment) throws IOException {
+        if (readerSeq != segment.seq) {
+            closeQuietly(reader);
+            reader = FileChannel.open(segment.path, StandardOpenOption.READ);
+            readerSeq = segment.seq;
+        }
+        return reader;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of spool segment");
+            }
+            position += n;
+        }
+    }
+
+    private void writeCursor() {
+        if (segments.isEmpty()) {
+            return;
+        }
+        try {
+            Path tmp = dir.resolve(CURSOR_FILE + ".tmp");
+            Files.writeString(tmp, segments.getFirst().seq + " " + readOffset, StandardCharsets.US_ASCII);
+            Files.move(tmp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[ShyHurricaneForwarder] Error writing spool cursor: " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing to do
+        }
+    }
+}
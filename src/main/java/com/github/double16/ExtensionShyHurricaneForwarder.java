@@ -1,44 +1,48 @@
 package com.github.double16;
 
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-
-import java.net.URL;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.StringUtils;
+import org.parosproxy.paros.Constant;
 import org.parosproxy.paros.core.scanner.Alert;
+import org.parosproxy.paros.db.DatabaseException;
+import org.parosproxy.paros.db.RecordAlert;
 import org.parosproxy.paros.extension.ExtensionAdaptor;
 import org.parosproxy.paros.extension.ExtensionHook;
-import org.parosproxy.paros.network.HttpHeader;
-import org.parosproxy.paros.network.HttpHeaderField;
+import org.parosproxy.paros.model.HistoryReference;
+import org.parosproxy.paros.model.Model;
+import org.parosproxy.paros.network.HttpMalformedHeaderException;
 import org.parosproxy.paros.network.HttpMessage;
-import org.parosproxy.paros.network.HttpRequestHeader;
-import org.parosproxy.paros.network.HttpResponseHeader;
 import org.parosproxy.paros.network.HttpSender;
 import org.zaproxy.zap.ZAP;
 import org.zaproxy.zap.eventBus.Event;
 import org.zaproxy.zap.eventBus.EventConsumer;
 import org.zaproxy.zap.extension.alert.AlertEventPublisher;
-import org.zaproxy.zap.extension.alert.ExtensionAlert;
 import org.zaproxy.zap.network.HttpSenderListener;
 
 @SuppressWarnings("unused")
 public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements EventConsumer, Runnable, HttpSenderListener {
 
+    /**
+     * An alert accepted for forwarding, with the ID of the message it was raised on if the event carried it.
+     */
+    private record PendingAlert(int alertId, int historyId) {
+    }
+
     private static final String NAME = "ShyHurricane";
     private static final String INDEX_PATH = "/index";
     private static final String FINDINGS_PATH = "/findings";
+    private static final String SPOOL_DIRECTORY = "shyhurricane-spool";
+    private static final int SPOOL_REPLAY_BATCH = 1000;
 
 
     /**
@@ -66,27 +70,119 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
             "application/vnd.ms-fontobject"
     );
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-
     /**
-     * Maps alert fingerprint to time millis when recorded. Prevents repeating alerts. The time is so we can clean up the map.
+     * Holds the list of pending alerts to post.
      */
-    private final ConcurrentHashMap<String, Long> processedFingerprints = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PendingAlert> pendingAlerts = new ConcurrentLinkedQueue<>();
     /**
-     * Holds the list of pending alerts to post.
+     * Size of {@link #pendingAlerts}, which doesn't have a constant time size().
      */
-    private final ConcurrentLinkedQueue<String> pendingAlerts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
     /**
-     * The alert event does not have all of the information we want. We can't query for a single Alert, only all alerts.
-     * So, we collect the alert IDs we want and periodically query all alerts and POST the findings.
+     * The alert event does not have all of the information we want. So, we collect the alert IDs we want and
+     * shortly after read each alert from the session database and POST the findings.
      */
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ShyHurricane-Findings");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private final ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam();
+    /**
+     * Replays the spool. Separate from {@link #executor} so a long replay doesn't delay findings.
+     */
+    private final ScheduledExecutorService replayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ShyHurricane-SpoolReplay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ShyHurricaneOptionsParam param;
+
+    /**
+     * Schedules {@link #run()} as alerts are queued.
+     */
+    private final FlushScheduler flushScheduler;
+
+    /**
+     * Published to ZAP's stats and the API.
+     */
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+    /**
+     * Traffic and findings the server couldn't accept, replayed periodically.
+     */
+    private final DiskSpool spool;
+    /**
+     * Picks the server for each target host when several are configured. The client is created in
+     * {@link #hook(ExtensionHook)}.
+     */
+    private final ShardRouter router;
+    private final IndexForwarder.Sink indexSink;
+    private final IndexForwarder.Sink findingsSink;
+    /**
+     * Sends captured traffic to the index endpoint so the HttpSender thread does not wait on the server.
+     */
+    private final IndexForwarder indexForwarder;
+    /**
+     * Hashes of the fingerprints of forwarded alerts. Prevents repeating alerts until the entry expires.
+     */
+    private final FingerprintStore processedFingerprints;
+    /**
+     * Only used from {@link #run()}, on the executor thread.
+     */
+    private final FindingRenderer findingRenderer = new FindingRenderer();
+    /**
+     * Threads for findings posted one per request.
+     */
+    private final SenderThreads findingSenders;
+    /**
+     * Posts the findings of a flush in as few requests as the batch limits allow. Only used from {@link #run()}.
+     */
+    private final FindingsBatcher findingsBatcher;
+    /**
+     * Hashes of forwarded traffic, to skip exact repeats.
+     */
+    private final TrafficDeduplicator trafficDeduplicator;
+    /**
+     * Clusters of similar active scanner responses, to forward only a few of each.
+     */
+    private final NearDuplicateFilter nearDuplicateFilter;
+    /**
+     * Sampling and rate limits per initiator.
+     */
+    private final InitiatorThrottle initiatorThrottle;
+    /**
+     * Scope decisions for {@link #onHttpResponseReceive} and {@link #run()}, cleared when the scope changes.
+     */
+    private final ScopeCache scopeCache = new ScopeCache(metrics);
+    /**
+     * Pooled connections to the server, created in {@link #hook(ExtensionHook)}.
+     */
+    private volatile ShyHurricaneClient client;
 
     @SuppressWarnings("unused")
     public ExtensionShyHurricaneForwarder() {
+        this(new ShyHurricaneOptionsParam(), System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock of the initiator rate limits
+     */
+    ExtensionShyHurricaneForwarder(ShyHurricaneOptionsParam param, LongSupplier nanoTime) {
         super(NAME);
+        this.param = param;
+        flushScheduler = new FlushScheduler(executor, this, param);
+        spool = new DiskSpool(param, () -> Path.of(Constant.getZapHome(), SPOOL_DIRECTORY));
+        router = new ShardRouter(param, () -> this.client, metrics, INDEX_PATH, FINDINGS_PATH);
+        indexSink = router.indexSink();
+        findingsSink = router.findingsSink();
+        indexForwarder = new IndexForwarder(param, indexSink, spool, metrics);
+        processedFingerprints = new FingerprintStore(param);
+        findingSenders = new SenderThreads("ShyHurricane-FindingsPost", param);
+        findingsBatcher = new FindingsBatcher(param, findingsSink, spool, metrics, findingSenders);
+        trafficDeduplicator = new TrafficDeduplicator(param, metrics);
+        nearDuplicateFilter = new NearDuplicateFilter(param, metrics);
+        initiatorThrottle = new InitiatorThrottle(metrics, nanoTime);
     }
 
     boolean isOnlyInScope() {
@@ -121,6 +217,14 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         param.setInitiatorsSelectedCsv(csv);
     }
 
+    String getInitiatorLimitsCsv() {
+        return param.getInitiatorLimitsCsv();
+    }
+
+    void setInitiatorLimitsCsv(String csv) {
+        param.setInitiatorLimitsCsv(csv);
+    }
+
     void setOnlyInScope(boolean v) {
         param.setOnlyInScope(v);
     }
@@ -137,16 +241,20 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         param.setMinRiskLevel(v);
     }
 
-    private String getMcpServerPath(String path) {
-        StringBuilder sb = new StringBuilder(getMcpServerUrl());
-        if (sb.charAt(sb.length() - 1) != '/') {
-            sb.append('/');
-        }
-        if (path.startsWith("/")) {
-            path = path.substring(1);
-        }
-        sb.append(path);
-        return sb.toString();
+    int getIndexQueueCapacity() {
+        return param.getIndexQueueCapacity();
+    }
+
+    void setIndexQueueCapacity(int v) {
+        param.setIndexQueueCapacity(v);
+    }
+
+    BackpressurePolicy getBackpressurePolicy() {
+        return param.getBackpressurePolicy();
+    }
+
+    void setBackpressurePolicy(BackpressurePolicy v) {
+        param.setBackpressurePolicy(v);
     }
 
     @Override
@@ -159,17 +267,30 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         super.hook(extensionHook);
 
         extensionHook.addOptionsParamSet(param);
+        client = new ShyHurricaneClient(param, metrics);
 
         ZAP.getEventBus().registerConsumer(this, AlertEventPublisher.getPublisher().getPublisherName(), AlertEventPublisher.ALERT_ADDED_EVENT);
-        executor.scheduleWithFixedDelay(this, 60, 120, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(() -> processedFingerprints.expire(System.currentTimeMillis()), 1, 1, TimeUnit.MINUTES);
+        executor.scheduleWithFixedDelay(() -> trafficDeduplicator.expire(System.currentTimeMillis()), 1, 1, TimeUnit.MINUTES);
+        replayExecutor.scheduleWithFixedDelay(this::replaySpool, 10, 10, TimeUnit.SECONDS);
+        // the utilization falls while no posts are sent
+        executor.scheduleWithFixedDelay(client::getThrottleUtilization, 5, 5, TimeUnit.SECONDS);
 
         extensionHook.addHttpSenderListener(this);
+        extensionHook.addSessionListener(scopeCache);
+        extensionHook.addApiImplementor(new ShyHurricaneApi(this));
 
         if (extensionHook.getHookView() != null) {
             extensionHook.getHookView().addOptionPanel(new ShyHurricaneOptionsPanel(this));
         }
     }
 
+    @Override
+    public void optionsLoaded() {
+        // the number of senders comes from the options
+        indexForwarder.start();
+    }
+
     @Override
     public boolean canUnload() {
         return true;
@@ -178,9 +299,28 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
     @Override
     public void unload() {
         ZAP.getEventBus().unregisterConsumer(this);
+        flushScheduler.cancel();
         executor.shutdown();
+        replayExecutor.shutdownNow();
+        try {
+            // the spool is closed below, let an interrupted replay finish first
+            replayExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        indexForwarder.close();
+        findingSenders.close();
+        if (client != null) {
+            client.close();
+        }
+        spool.close();
         pendingAlerts.clear();
+        pendingCount.set(0);
         processedFingerprints.clear();
+        trafficDeduplicator.clear();
+        nearDuplicateFilter.clear();
+        initiatorThrottle.clear();
+        scopeCache.clear();
 
         // ZAP handles removing the HttpSenderListener
 
@@ -198,103 +338,111 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         if (risk < getMinimumRiskLevel()) {
             return;
         }
-        String fingerprint = alertFingerprint(event);
-        if (processedFingerprints.containsKey(fingerprint)) {
+        if (!processedFingerprints.add(Hashing.hash64(alertFingerprint(event)), System.currentTimeMillis())) {
             return;
         }
-        processedFingerprints.putIfAbsent(fingerprint, System.currentTimeMillis());
-        pendingAlerts.offer(map.get(AlertEventPublisher.ALERT_ID));
+        pendingAlerts.offer(new PendingAlert(
+                Integer.parseInt(map.get(AlertEventPublisher.ALERT_ID)),
+                parseInt(map.get(AlertEventPublisher.HISTORY_REFERENCE_ID), -1)));
+        flushScheduler.alertQueued(pendingCount.incrementAndGet(), risk >= Alert.RISK_HIGH);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     @Override
     public void run() {
-        ExtensionAlert exAlert = null;
-        Map<Integer, Alert> allAlerts = null;
-
-        String alertId;
-        while ((alertId = pendingAlerts.poll()) != null) {
-            if (exAlert == null) {
-                exAlert = (ExtensionAlert) org.parosproxy.paros.control.Control.getSingleton().
-                        getExtensionLoader().getExtension(
-                                ExtensionAlert.NAME);
-                allAlerts = new HashMap<>();
-                for (Alert alert : exAlert.getAllAlerts()) {
-                    allAlerts.put(alert.getAlertId(), alert);
-                }
-            }
+        flushScheduler.flushStarted();
 
-            Alert alert = allAlerts.get(Integer.parseInt(alertId));
+        // alerts raised on the same message share the history reference, so it's only read once per flush
+        Map<Integer, HistoryReference> historyRefs = new HashMap<>();
+
+        PendingAlert pending;
+        while ((pending = pendingAlerts.poll()) != null) {
+            pendingCount.decrementAndGet();
+            Alert alert;
+            try {
+                alert = readAlert(pending, historyRefs);
+            } catch (Exception e) {
+                System.err.println("[ShyHurricaneForwarder] Error reading alert " + pending.alertId() + ": " + e.getMessage());
+                continue;
+            }
             if (alert == null) {
                 continue;
             }
             if (isOnlyInScope()) {
-                if (alert.getMessage() != null && !alert.getMessage().isInScope()) {
+                if (alert.getMessage() != null && !scopeCache.isInScope(alert.getMessage())) {
                     continue;
                 }
             }
 
             try {
-                String title = alert.getName() + " at " + alert.getUri();
-                StringBuilder markdown = new StringBuilder();
-                markdown.append("# ").append(title).append("\n\n");
-                markdown.append(String.format("""
-                        **Summary**
-                        %s
-                        Risk: %s
-                        Confidence: %s
-                        """, alert.getDescription(), Alert.MSG_RISK[alert.getRisk()], Alert.MSG_CONFIDENCE[alert.getConfidence()]));
-                if (StringUtils.isNotBlank(alert.getOtherInfo())) {
-                    markdown.append(alert.getOtherInfo()).append("\n");
-                }
-                markdown.append(String.format("\n**Discovery Method**\nDiscovered by OWASP ZAP (Plugin ID: %d)\n", alert.getPluginId()));
-                if (StringUtils.isNotBlank(alert.getEvidence())) {
-                    markdown.append(String.format("Evidence: `%s`\n", alert.getEvidence()));
-                }
-                markdown.append(String.format("\n**Reproduction Steps**\nAccess the following URL: `%s %s`\n",
-                        StringUtils.isNotBlank(alert.getMethod()) ? alert.getMethod() : "GET",
-                        alert.getUri()));
-                if (StringUtils.isNotBlank(alert.getParam())) {
-                    markdown.append(String.format("Parameter: `%s`\n", alert.getParam()));
-                }
-                if (StringUtils.isNotBlank(alert.getPostData())) {
-                    markdown.append(String.format("Data: `%s`\n", alert.getPostData()));
-                }
-                if (StringUtils.isNotBlank(alert.getInputVector())) {
-                    markdown.append(String.format("Input vector: `%s`\n", alert.getInputVector()));
-                }
-                if (StringUtils.isNotBlank(alert.getAttack())) {
-                    markdown.append(String.format("Attack: `%s`\n", alert.getAttack()));
-                }
-                if (StringUtils.isNotBlank(alert.getSolution())) {
-                    markdown.append(String.format("\n**Solution**\n%s\n", alert.getSolution()));
-                }
-                if (alert.getCweId() > 0 || alert.getWascId() > 0 || StringUtils.isNotBlank(alert.getReference())) {
-                    markdown.append("\n**References**\n");
-                    if (alert.getCweId() > 0) {
-                        markdown.append(String.format("- CWE-%d\n", alert.getCweId()));
-                    }
-                    if (alert.getWascId() > 0) {
-                        markdown.append(String.format("- WASC-%d\n", alert.getWascId()));
-                    }
-                    if (StringUtils.isNotBlank(alert.getReference())) {
-                        markdown.append("- ").append(alert.getReference().replace("\n", "\n- "));
-                    }
-                }
-                postFinding(alert.getUri(), title, markdown.toString());
-
+                findingsBatcher.add(alert.getUri(), alert.getName() + " at " + alert.getUri(), findingRenderer.render(alert));
             } catch (Exception e) {
                 System.err.println("[ShyHurricaneForwarder] Error posting finding: " + e.getMessage());
             }
         }
+        findingsBatcher.flush();
+    }
+
+    /**
+     * Reads a single alert from the session database, so the cost of a flush is proportional to the number of new
+     * alerts and not the number of alerts in the session.
+     *
+     * @return null if the alert no longer exists
+     */
+    private Alert readAlert(PendingAlert pending, Map<Integer, HistoryReference> historyRefs)
+            throws DatabaseException, HttpMalformedHeaderException {
+        RecordAlert record = Model.getSingleton().getDb().getTableAlert().read(pending.alertId());
+        if (record == null) {
+            return null;
+        }
+        int historyId = pending.historyId() >= 0 ? pending.historyId() : record.getHistoryId();
+        HistoryReference ref = historyRefs.get(historyId);
+        if (ref == null) {
+            ref = new HistoryReference(historyId);
+            historyRefs.put(historyId, ref);
+        }
+        return new Alert(record, ref);
+    }
 
+    /**
+     * Sends spooled entries once the server accepts them again. The first entry that fails stops the replay. While
+     * an endpoint's circuit breaker is open nothing is sent, once the open time has passed the replay is its probe.
+     */
+    void replaySpool() {
+        try {
+            if (spool.isEmpty()) {
+                return;
+            }
+            int replayed;
+            do {
+                replayed = spool.replay(this::deliver, SPOOL_REPLAY_BATCH);
+                metrics.add(ForwarderMetrics.Counter.SPOOL_REPLAYED, replayed);
+            } while (replayed == SPOOL_REPLAY_BATCH);
+        } catch (Exception e) {
+            // still unavailable, try again later
+        }
     }
 
-    private void postFinding(String target, String title, String markdown) throws Exception {
-        Map<String, Object> data = new HashMap<>();
-        data.put("target", target);
-        data.put("title", title);
-        data.put("markdown", markdown);
-        postData(getMcpServerPath(FINDINGS_PATH), data);
+    /**
+     * Posts a JSON document to the endpoint for its kind, on the server for the host it belongs to.
+     *
+     * @return false if the server may accept the document later
+     */
+    private boolean deliver(int kind, byte[] json, int offset, int length) throws Exception {
+        IndexForwarder.Sink sink = kind == DiskSpool.KIND_FINDING ? findingsSink : indexSink;
+        int status = sink.post(sink.route(ShardRouter.routingHost(json, offset, length)), IndexForwarder.JSON, json,
+                offset, length);
+        return !ShyHurricaneClient.isRetryable(status);
     }
 
     private String alertFingerprint(Event alertEvent) {
@@ -313,7 +461,7 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         return 1000;
     }
 
-    private boolean shouldSkip(String contentType) {
+    static boolean shouldSkip(String contentType) {
         if (contentType == null || contentType.isEmpty()) {
             return false;
         }
@@ -341,94 +489,71 @@ public class ExtensionShyHurricaneForwarder extends ExtensionAdaptor implements
         return SKIP_TYPES.contains(ct);
     }
 
-    /**
-     * Katana headers are lowercase with underscores.
-     */
-    private Map<String, String> toKatanaHeaders(HttpHeader headers) {
-        Map<String, String> map = new HashMap<>();
-        for (HttpHeaderField header : headers.getHeaders()) {
-            String katanaHeaderName = header.getName().toLowerCase();
-            if (map.containsKey(katanaHeaderName)) {
-                map.put(katanaHeaderName, map.get(katanaHeaderName) + ";" + header.getValue());
-            } else {
-                map.put(katanaHeaderName, header.getValue());
-            }
-        }
-        return map;
-    }
-
     @Override
     public void onHttpResponseReceive(HttpMessage msg, int initiator, HttpSender sender) {
+        metrics.increment(ForwarderMetrics.Counter.MESSAGES_SEEN);
+        CaptureConfig config = param.getCaptureConfig();
         // Filter by request initiator if configured
-        if (!param.isInitiatorsAll() && !param.isInitiatorSelected(initiator)) {
+        if (!config.isInitiatorSelected(initiator)) {
+            metrics.increment(ForwarderMetrics.Counter.SKIPPED_INITIATOR);
             return;
         }
-        if (isOnlyInScope() && !msg.isInScope()) {
+        if (config.isOnlyInScope() && !scopeCache.isInScope(msg)) {
+            metrics.increment(ForwarderMetrics.Counter.SKIPPED_SCOPE);
             return;
         }
 
-        HttpRequestHeader req_hdr = msg.getRequestHeader();
-        HttpResponseHeader res_hdr = msg.getResponseHeader();
-
-        String contentType = res_hdr.getNormalisedContentTypeValue();
+        String contentType = msg.getResponseHeader().getNormalisedContentTypeValue();
         if (shouldSkip(contentType)) {
+            metrics.increment(ForwarderMetrics.Counter.SKIPPED_CONTENT_TYPE);
             return;
         }
-
-        String now = DateTimeFormatter.ISO_INSTANT.format(Instant.now());
-        Map<String, Object> request = new HashMap<>();
-        Map<String, Object> response = new HashMap<>();
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("timestamp", now);
-        entry.put("request", request);
-        entry.put("response", response);
-
-        request.put("method", req_hdr.getMethod());
-        request.put("endpoint", req_hdr.getURI().toString());
-        request.put("headers", toKatanaHeaders(req_hdr));
-        try {
-            request.put("body", msg.getRequestBody().toString());
-        } catch (Exception e) {
-            // bad unicode chars or binary data
+        // before the duplicate filters, which remember what they let through: a message dropped here must not
+        // suppress its later repeats or take a representative slot
+        if (!initiatorThrottle.allow(initiator, config.getInitiatorLimits())) {
+            return;
         }
-
-        response.put("status_code", res_hdr.getStatusCode());
-        response.put("headers", toKatanaHeaders(res_hdr));
-        try {
-            response.put("body", msg.getResponseBody().toString());
-        } catch (Exception e) {
-            // bad unicode chars or binary data
+        long now = System.currentTimeMillis();
+        long dedupKey = trafficDeduplicator.key(msg);
+        if (trafficDeduplicator.isRepeat(msg, dedupKey, now)) {
+            return;
         }
-        response.put("rtt", msg.getTimeElapsedMillis() / 1000.0);
-
-        try {
-            postIndex(entry);
-        } catch (Exception e) {
-            System.err.println("[ShyHurricaneForwarder] Error posting index: " + e.getMessage());
+        NearDuplicateFilter.Sample sample = nearDuplicateFilter.sample(msg, initiator);
+        if (nearDuplicateFilter.isNearDuplicate(sample)) {
+            return;
         }
-    }
 
-    private void postIndex(Map<String, Object> data) throws Exception {
-        postData(getMcpServerPath(INDEX_PATH), data);
+        if (indexForwarder.offer(TrafficEntry.capture(msg, config))) {
+            // only now, a message the queue dropped must not suppress its repeats or take a representative's place
+            trafficDeduplicator.forwarded(dedupKey, now);
+            nearDuplicateFilter.forwarded(sample);
+            metrics.increment(ForwarderMetrics.Counter.QUEUED);
+        }
     }
 
-    private void postData(String urlStr, Map<String, Object> data) throws Exception {
-        String jsonBody = MAPPER.writeValueAsString(data);
-
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-
-        try (var writer = new OutputStreamWriter(conn.getOutputStream())) {
-            writer.write(jsonBody);
+    /**
+     * Counters, histograms and the current state of the queues, for the API.
+     */
+    Map<String, Object> getMetricsSnapshot() {
+        if (client != null) {
+            client.getThrottleUtilization();
         }
-
-        int status = conn.getResponseCode();
-        if (status >= 400) {
-            System.err.println("[ShyHurricaneForwarder] Failed to POST " + urlStr + ": HTTP " + status);
+        Map<String, Object> map = new LinkedHashMap<>(metrics.snapshot());
+        map.put("index.queue.size", indexForwarder.size());
+        map.put("index.queue.spilled", indexForwarder.getSpilled());
+        for (BackpressurePolicy policy : BackpressurePolicy.values()) {
+            map.put("index.queue.dropped." + policy.name().toLowerCase(), indexForwarder.getDropped(policy));
         }
+        map.put("findings.pending", pendingCount.get());
+        map.put("spool.pendingBytes", spool.pendingBytes());
+        map.put("scope.cache.size", scopeCache.size());
+        map.put("traffic.dedup.size", trafficDeduplicator.size());
+        map.put("traffic.nearDup.endpoints", nearDuplicateFilter.endpointCount());
+        map.put("http.virtualThreads", SenderThreads.useVirtual(param));
+        if (client != null) {
+            router.putStates(map);
+        }
+        return map;
     }
 
     @Override
@@ -0,0 +1,171 @@
+package com.github.double16;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.lang3.StringUtils;
+import org.parosproxy.paros.core.scanner.Alert;
+
+/**
+ * Renders an alert as the markdown body of a finding.
+ * <p>
+ * The description, solution and references are the same for every alert raised by a scan rule, so those sections are
+ * rendered once and cached by plugin ID and alert reference. Only the parts that differ per alert (URI, risk,
+ * evidence, parameter, ...) are appended for each alert. Cached sections are checked against the alert before use,
+ * so a rule that varies its description still renders correctly, it just misses the cache.
+ * <p>
+ * Not thread safe, the builder is reused between calls.
+ */
+class FindingRenderer {
+
+    static final int DEFAULT_MAX_CACHED_RULES = 1024;
+
+    private record Key(int pluginId, String alertRef) {
+    }
+
+    /**
+     * The per-rule sections and the values they were rendered from, with the hashes of the long values.
+     */
+    private record Fragments(
+            String description, int descriptionHash, String solution, int solutionHash,
+            String reference, int referenceHash, int cweId, int wascId,
+            String summary, String discovery, String tail) {
+
+        boolean matches(Alert alert) {
+            return cweId == alert.getCweId()
+                    && wascId == alert.getWascId()
+                    && same(description, descriptionHash, alert.getDescription())
+                    && same(solution, solutionHash, alert.getSolution())
+                    && same(reference, referenceHash, alert.getReference());
+        }
+
+        /**
+         * Alerts of a rule usually share the text instances. Texts read back from the database don't, a different
+         * length or hash rules most of those out before comparing the characters.
+         */
+        private static boolean same(String cached, int cachedHash, String value) {
+            if (cached == value) {
+                return true;
+            }
+            if (cached == null || value == null || cached.length() != value.length()
+                    || cachedHash != value.hashCode()) {
+                return false;
+            }
+            return cached.equals(value);
+        }
+    }
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final Map<Key, Fragments> cache;
+    private StringBuilder markdown = new StringBuilder(1024);
+    private long hits;
+    private long misses;
+
+    FindingRenderer() {
+        this(DEFAULT_MAX_CACHED_RULES);
+    }
+
+    FindingRenderer(int maxCachedRules) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Fragments> eldest) {
+                return size() > maxCachedRules;
+            }
+        };
+    }
+
+    String render(Alert alert) {
+        Fragments fragments = fragments(alert);
+        StringBuilder md = markdown;
+        md.setLength(0);
+
+        md.append("# ").append(alert.getName()).append(" at ").append(alert.getUri()).append("\n\n");
+        md.append(fragments.summary());
+        md.append("Risk: ").append(Alert.MSG_RISK[alert.getRisk()]).append('\n');
+        md.append("Confidence: ").append(Alert.MSG_CONFIDENCE[alert.getConfidence()]).append('\n');
+        if (StringUtils.isNotBlank(alert.getOtherInfo())) {
+            md.append(alert.getOtherInfo()).append('\n');
+        }
+        md.append(fragments.discovery());
+        appendCode(md, "Evidence: `", alert.getEvidence());
+        md.append("\n**Reproduction Steps**\nAccess the following URL: `")
+                .append(StringUtils.isNotBlank(alert.getMethod()) ? alert.getMethod() : "GET")
+                .append(' ').append(alert.getUri()).append("`\n");
+        appendCode(md, "Parameter: `", alert.getParam());
+        appendCode(md, "Data: `", alert.getPostData());
+        appendCode(md, "Input vector: `", alert.getInputVector());
+        appendCode(md, "Attack: `", alert.getAttack());
+        md.append(fragments.tail());
+
+        String result = md.toString();
+        if (md.capacity() > MAX_RETAINED_CAPACITY) {
+            // don't hold on to the buffer of an unusually large finding
+            markdown = new StringBuilder(1024);
+        }
+        return result;
+    }
+
+    private static void appendCode(StringBuilder md, String label, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            md.append(label).append(value).append("`\n");
+        }
+    }
+
+    private Fragments fragments(Alert alert) {
+        Key key = new Key(alert.getPluginId(), alert.getAlertRef());
+        Fragments fragments = cache.get(key);
+        if (fragments != null && fragments.matches(alert)) {
+            hits++;
+            return fragments;
+        }
+        misses++;
+        fragments = compile(alert);
+        cache.put(key, fragments);
+        return fragments;
+    }
+
+    private static Fragments compile(Alert alert) {
+        String summary = "**Summary**\n" + alert.getDescription() + "\n";
+        String discovery = "\n**Discovery Method**\nDiscovered by OWASP ZAP (Plugin ID: " + alert.getPluginId() + ")\n";
+
+        StringBuilder tail = new StringBuilder();
+        if (StringUtils.isNotBlank(alert.getSolution())) {
+            tail.append("\n**Solution**\n").append(alert.getSolution()).append('\n');
+        }
+        if (alert.getCweId() > 0 || alert.getWascId() > 0 || StringUtils.isNotBlank(alert.getReference())) {
+            tail.append("\n**References**\n");
+            if (alert.getCweId() > 0) {
+                tail.append("- CWE-").append(alert.getCweId()).append('\n');
+            }
+            if (alert.getWascId() > 0) {
+                tail.append("- WASC-").append(alert.getWascId()).append('\n');
+            }
+            if (StringUtils.isNotBlank(alert.getReference())) {
+                tail.append("- ").append(alert.getReference().replace("\n", "\n- "));
+            }
+        }
+
+        return new Fragments(alert.getDescription(), Objects.hashCode(alert.getDescription()),
+                alert.getSolution(), Objects.hashCode(alert.getSolution()),
+                alert.getReference(), Objects.hashCode(alert.getReference()),
+                alert.getCweId(), alert.getWascId(), summary, discovery, tail.toString());
+    }
+
+    int cachedRules() {
+        return cache.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.double16;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+/**
+ * Collects the findings of a flush and posts them to {@code /findings} as NDJSON batches, capped by entry count and
+ * body size, instead of one request per finding. A batch only holds findings with the same
+ * {@link IndexForwarder.Sink#route(String)}, there is a batch per route.
+ * <p>
+ * If a server can't process NDJSON bodies, findings for it are posted on their own, see {@link BulkSupport}. Findings
+ * that can't be delivered are spooled individually.
+ * <p>
+ * Not thread safe, used from the findings executor. Only the single posts of a flush run on other threads.
+ */
+class FindingsBatcher {
+
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final ShyHurricaneOptionsParam param;
+    private final IndexForwarder.Sink sink;
+    private final DiskSpool spool;
+    private final ForwarderMetrics metrics;
+    private final SenderThreads senders;
+    private final BulkSupport bulk = new BulkSupport();
+
+    /**
+     * The findings of one route.
+     */
+    private static final class Batch {
+        final Object route;
+        final Buffer buffer = new Buffer();
+        /**
+         * End offset of each finding in {@link #buffer}, including its newline.
+         */
+        int[] offsets = new int[64];
+        int count;
+
+        Batch(Object route) {
+            this.route = route;
+        }
+
+        int start(int index) {
+            return index == 0 ? 0 : offsets[index - 1];
+        }
+
+        /**
+         * @return the length of a finding without the newline, which isn't part of the JSON document
+         */
+        int length(int index) {
+            return offsets[index] - start(index) - 1;
+        }
+    }
+
+    /**
+     * Dropped by {@link #flush()}, a flush rarely has findings for more than a few routes.
+     */
+    private final Map<Object, Batch> batches = new LinkedHashMap<>();
+
+    /**
+     * @param sink    posts to the findings endpoint
+     * @param spool   receives undeliverable findings, may be null
+     * @param senders posts findings concurrently when they are sent one per request
+     */
+    FindingsBatcher(ShyHurricaneOptionsParam param, IndexForwarder.Sink sink, DiskSpool spool, ForwarderMetrics metrics,
+                    SenderThreads senders) {
+        this.param = param;
+        this.sink = sink;
+        this.spool = spool;
+        this.metrics = metrics;
+        this.senders = senders;
+    }
+
+    /**
+     * Adds a finding to the batch of its route, posting the batch first if the finding doesn't fit and afterward if
+     * it's full.
+     */
+    void add(String target, String title, String markdown) throws IOException {
+        Batch batch = batches.computeIfAbsent(sink.route(ShardRouter.host(target)), Batch::new);
+        Buffer buffer = batch.buffer;
+        int mark = buffer.size();
+        try (JsonGenerator gen = FACTORY.createGenerator(buffer, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("target", target);
+            gen.writeStringField("title", title);
+            gen.writeStringField("markdown", markdown);
+            gen.writeEndObject();
+        } catch (IOException | RuntimeException e) {
+            buffer.truncate(mark);
+            throw e;
+        }
+
+        int maxBytes = param.getFindingsBatchMaxBytes();
+        if (batch.count > 0 && buffer.size() + 1 > maxBytes) {
+            byte[] json = Arrays.copyOfRange(buffer.array(), mark, buffer.size());
+            buffer.truncate(mark);
+            flush(batch);
+            buffer.write(json, 0, json.length);
+        }
+        buffer.write('\n');
+        if (batch.count == batch.offsets.length) {
+            batch.offsets = Arrays.copyOf(batch.offsets, batch.count * 2);
+        }
+        batch.offsets[batch.count++] = buffer.size();
+
+        if (!param.isFindingsBatchEnabled() || !bulk.isSupported(sink.server(batch.route), System.currentTimeMillis())
+                || batch.count >= param.getFindingsBatchMaxEntries() || buffer.size() >= maxBytes) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Posts the findings collected so far.
+     */
+    void flush() {
+        for (Batch batch : batches.values()) {
+            flush(batch);
+        }
+        batches.clear();
+    }
+
+    private void flush(Batch batch) {
+        if (batch.count == 0) {
+            return;
+        }
+        try {
+            if (batch.count == 1 || !param.isFindingsBatchEnabled()
+                    || !bulk.isSupported(sink.server(batch.route), System.currentTimeMillis())) {
+                postEach(batch);
+                return;
+            }
+            int status;
+            try {
+                status = sink.post(batch.route, IndexForwarder.NDJSON, batch.buffer.array(), 0, batch.buffer.size());
+            } catch (Exception e) {
+                logPostFailure(e);
+                spoolEach(batch);
+                return;
+            }
+            if (BulkSupport.isRejected(status)) {
+                boolean accepted = postEach(batch);
+                if (bulk.rejected(sink.server(batch.route), status, accepted, System.currentTimeMillis())) {
+                    System.err.println("[ShyHurricaneForwarder] Server rejected NDJSON findings with HTTP " + status
+                            + ", posting one request per finding for the next "
+                            + TimeUnit.MILLISECONDS.toMinutes(BulkSupport.REPROBE_MILLIS) + " minutes");
+                }
+            } else if (ShyHurricaneClient.isRetryable(status)) {
+                spoolEach(batch);
+            } else if (status >= 400) {
+                metrics.add(ForwarderMetrics.Counter.FINDINGS_FAILED, batch.count);
+            } else {
+                metrics.add(ForwarderMetrics.Counter.FINDINGS_SENT, batch.count);
+            }
+        } finally {
+            batch.buffer.reset();
+            batch.count = 0;
+        }
+    }
+
+    /**
+     * @return true if no server is known not to support NDJSON
+     */
+    boolean isBulkSupported() {
+        return bulk.isSupportedEverywhere();
+    }
+
+    /**
+     * Posts the findings one per request, concurrently since they don't depend on each other.
+     *
+     * @return true if every finding was accepted
+     */
+    private boolean postEach(Batch batch) {
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        senders.runAll(batch.count, i -> {
+            int status = postOrSpool(batch, batch.start(i), batch.length(i));
+            if (status < 200 || status >= 400) {
+                accepted.set(false);
+            }
+        });
+        return accepted.get();
+    }
+
+    /**
+     * @return the HTTP status code, -1 if the post failed
+     */
+    private int postOrSpool(Batch batch, int offset, int length) {
+        int status = -1;
+        try {
+            status = sink.post(batch.route, IndexForwarder.JSON, batch.buffer.array(), offset, length);
+            if (!ShyHurricaneClient.isRetryable(status)) {
+                metrics.increment(status >= 400 ? ForwarderMetrics.Counter.FINDINGS_FAILED : ForwarderMetrics.Counter.FINDINGS_SENT);
+                return status;
+            }
+        } catch (Exception e) {
+            logPostFailure(e);
+        }
+        spool(batch, offset, length);
+        return status;
+    }
+
+    private void spoolEach(Batch batch) {
+        for (int i = 0; i < batch.count; i++) {
+            spool(batch, batch.start(i), batch.length(i));
+        }
+    }
+
+    private void spool(Batch batch, int offset, int length) {
+        metrics.increment(ForwarderMetrics.Counter.FINDINGS_FAILED);
+        if (spool != null) {
+            spool.append(DiskSpool.KIND_FINDING, batch.buffer.array(), offset, length);
+        }
+    }
+
+    private static void logPostFailure(Exception e) {
+        // the breaker logs when it opens, not every finding it turns away
+        if (!(e instanceof CircuitBreaker.OpenException)) {
+            System.err.println("[ShyHurricaneForwarder] Error posting finding: " + e.getMessage());
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(16 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
+}
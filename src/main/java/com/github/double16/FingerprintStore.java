@@ -0,0 +1,277 @@
+package com.github.double16;
+
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which alert fingerprints have been forwarded, keyed by a 64-bit hash of the fingerprint. Entries expire
+ * after the configured TTL so a re-raised alert is forwarded again, and the number of entries is bounded so
+ * long-running ZAP instances don't grow without limit. The same store remembers the hashes of forwarded traffic.
+ * <p>
+ * The table is open addressing with linear probing over primitive arrays, so an entry costs 16 bytes and no objects.
+ * The key 0 marks an empty slot. The store can be split into stripes by key, each with its own table and lock, so
+ * concurrent callers rarely wait for each other. The entry limit is shared evenly by the stripes.
+ */
+class FingerprintStore {
+
+    private static final int MIN_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.5f;
+    /**
+     * A full stripe evicts this fraction of its entries, the oldest first.
+     */
+    private static final int EVICT_DIVISOR = 8;
+
+    private final LongSupplier ttlMillis;
+    private final IntSupplier maxEntries;
+    private final Stripe[] stripes;
+
+    /**
+     * A store for alert fingerprints, limited by the alert de-duplication options.
+     */
+    FingerprintStore(ShyHurricaneOptionsParam param) {
+        this(() -> param.getAlertDedupTtlMinutes() * 60_000L, param::getAlertDedupMaxEntries);
+    }
+
+    FingerprintStore(LongSupplier ttlMillis, IntSupplier maxEntries) {
+        this(ttlMillis, maxEntries, 1);
+    }
+
+    /**
+     * @param ttlMillis  how long an entry lives, 0 or less to never expire, read on each use
+     * @param maxEntries the maximum number of entries, read on each use
+     * @param stripes    the number of independently locked tables, rounded up to a power of two
+     */
+    FingerprintStore(LongSupplier ttlMillis, IntSupplier maxEntries, int stripes) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records the fingerprint if it isn't present or its entry has expired.
+     *
+     * @return true if the fingerprint is new, i.e. the alert should be forwarded
+     */
+    boolean add(long hash, long nowMillis) {
+        long key = hash != 0 ? hash : 1;
+        return stripe(key).add(key, nowMillis, ttlMillis.getAsLong(), maxPerStripe());
+    }
+
+    /**
+     * @return true if the fingerprint is present and its entry hasn't expired, without recording it
+     */
+    boolean contains(long hash, long nowMillis) {
+        long key = hash != 0 ? hash : 1;
+        return stripe(key).contains(key, nowMillis, ttlMillis.getAsLong());
+    }
+
+    /**
+     * Removes expired entries and shrinks the tables that became sparse.
+     *
+     * @return the number of entries removed
+     */
+    int expire(long nowMillis) {
+        long ttl = ttlMillis.getAsLong();
+        if (ttl <= 0) {
+            return 0;
+        }
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            removed += stripe.expire(nowMillis - ttl + 1);
+        }
+        return removed;
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private int maxPerStripe() {
+        int max = Math.max(1, maxEntries.getAsInt());
+        return Math.max(1, (max + stripes.length - 1) / stripes.length);
+    }
+
+    private Stripe stripe(long key) {
+        // the slot in the stripe uses the low bits of the mixed key
+        return stripes[(int) (Hashing.mix(key) >>> 40) & (stripes.length - 1)];
+    }
+
+    private static int slot(long[] keys, long key) {
+        return (int) Hashing.mix(key) & (keys.length - 1);
+    }
+
+    /**
+     * @return the slot of the key, or of the empty slot where it would be inserted
+     */
+    private static int find(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int i = slot(keys, key);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (entries + 1 > capacity * LOAD_FACTOR) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static final class Stripe {
+        private long[] keys;
+        private long[] times;
+        private int size;
+
+        Stripe() {
+            clear();
+        }
+
+        synchronized boolean add(long key, long nowMillis, long ttl, int max) {
+            int i = find(keys, key);
+            if (keys[i] == key) {
+                if (ttl > 0 && nowMillis - times[i] >= ttl) {
+                    times[i] = nowMillis;
+                    return true;
+                }
+                return false;
+            }
+
+            if (size >= max) {
+                if (ttl > 0) {
+                    removeOlderThan(nowMillis - ttl + 1);
+                }
+                if (size >= max) {
+                    evictOldest();
+                }
+            }
+            put(key, nowMillis);
+            return true;
+        }
+
+        synchronized boolean contains(long key, long nowMillis, long ttl) {
+            int i = find(keys, key);
+            return keys[i] == key && (ttl <= 0 || nowMillis - times[i] < ttl);
+        }
+
+        synchronized int expire(long cutoffMillis) {
+            return removeOlderThan(cutoffMillis);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            keys = new long[MIN_CAPACITY];
+            times = new long[MIN_CAPACITY];
+            size = 0;
+        }
+
+        /**
+         * Inserts the key or updates its time.
+         */
+        private void put(long key, long time) {
+            int i = find(keys, key);
+            if (keys[i] == key) {
+                times[i] = time;
+                return;
+            }
+            if (size + 1 > keys.length * LOAD_FACTOR) {
+                rebuild(keys.length * 2, Long.MIN_VALUE);
+                i = find(keys, key);
+            }
+            keys[i] = key;
+            times[i] = time;
+            size++;
+        }
+
+        /**
+         * Called when the stripe is full of live entries. Drops the oldest eighth of the entries, at least one, so the
+         * cost of the scan is shared by many inserts.
+         */
+        private void evictOldest() {
+            long[] live = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    live[n++] = times[i];
+                }
+            }
+            int evict = Math.max(1, size / EVICT_DIVISOR);
+            Arrays.sort(live);
+            long cutoff = live[evict - 1];
+            // entries older than the cutoff all go, entries at it only as many as are still needed
+            int atCutoff = evict;
+            for (long time : live) {
+                if (time < cutoff) {
+                    atCutoff--;
+                }
+            }
+            long[] oldKeys = keys;
+            long[] oldTimes = times;
+            keys = new long[capacityFor(size - evict)];
+            times = new long[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0 || oldTimes[i] < cutoff || (oldTimes[i] == cutoff && atCutoff-- > 0)) {
+                    continue;
+                }
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                times[slot] = oldTimes[i];
+                size++;
+            }
+        }
+
+        private int removeOlderThan(long cutoffMillis) {
+            int removed = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && times[i] < cutoffMillis) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                // rebuilding is simpler than tombstones or backward shifting, and sizes the table for what's left
+                rebuild(capacityFor(size - removed), cutoffMillis);
+            }
+            return removed;
+        }
+
+        private void rebuild(int capacity, long cutoffMillis) {
+            long[] oldKeys = keys;
+            long[] oldTimes = times;
+            keys = new long[capacity];
+            times = new long[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0 && oldTimes[i] >= cutoffMillis) {
+                    int slot = find(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    times[slot] = oldTimes[i];
+                    size++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.double16;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules the findings flush when alerts are queued instead of on a fixed period. A flush runs once the queue
+ * reaches the configured size or the oldest queued alert has waited the target delay, whichever is first. High
+ * risk alerts use a shorter delay. Requests are coalesced into one scheduled flush, and flushes are spaced at least
+ * the minimum interval apart so bursts during an active scan are still sent together.
+ */
+class FlushScheduler {
+
+    private final ScheduledExecutorService executor;
+    private final Runnable flush;
+    private final ShyHurricaneOptionsParam param;
+    private final LongSupplier nanoTime;
+
+    private final Object lock = new Object();
+    private ScheduledFuture<?> scheduled;
+    private long scheduledAtNanos;
+    private long lastFlushNanos;
+    private boolean flushedBefore;
+
+    FlushScheduler(ScheduledExecutorService executor, Runnable flush, ShyHurricaneOptionsParam param) {
+        this(executor, flush, param, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock of the minimum interval, replaced by tests
+     */
+    FlushScheduler(ScheduledExecutorService executor, Runnable flush, ShyHurricaneOptionsParam param,
+                   LongSupplier nanoTime) {
+        this.executor = executor;
+        this.flush = flush;
+        this.param = param;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Called after an alert is queued.
+     *
+     * @param pendingCount number of queued alerts, including the new one
+     * @param urgent       true to use the high risk delay
+     */
+    void alertQueued(int pendingCount, boolean urgent) {
+        long delayMillis;
+        if (pendingCount >= param.getFindingsFlushBatchSize()) {
+            delayMillis = 0;
+        } else if (urgent) {
+            delayMillis = param.getFindingsFlushHighRiskDelayMillis();
+        } else {
+            delayMillis = param.getFindingsFlushMaxDelayMillis();
+        }
+        schedule(delayMillis);
+    }
+
+    /**
+     * Called by the flush when it starts, so alerts queued while it runs schedule the next flush.
+     */
+    void flushStarted() {
+        synchronized (lock) {
+            scheduled = null;
+            lastFlushNanos = nanoTime.getAsLong();
+            flushedBefore = true;
+        }
+    }
+
+    void cancel() {
+        synchronized (lock) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        synchronized (lock) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            long now = nanoTime.getAsLong();
+            long at = now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+            if (flushedBefore) {
+                at = Math.max(at, lastFlushNanos + TimeUnit.MILLISECONDS.toNanos(param.getFindingsFlushMinIntervalMillis()));
+            }
+            if (scheduled != null) {
+                if (scheduledAtNanos - at <= 0) {
+                    // the scheduled flush is soon enough
+                    return;
+                }
+                if (!scheduled.cancel(false)) {
+                    // already running, flushStarted() takes care of what's queued
+                    return;
+                }
+            }
+            scheduledAtNanos = at;
+            scheduled = executor.schedule(flush, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+        }
+    }
+}
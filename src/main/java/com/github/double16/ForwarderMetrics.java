@@ -0,0 +1,251 @@
+package com.github.double16;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.zaproxy.zap.utils.Stats;
+
+/**
+ * Counters, gauges and latency histograms for the forwarder. Every update is also published to ZAP's {@link Stats}
+ * under {@code stats.shyhurricane.}, and {@link #snapshot()} is served by the API view.
+ */
+class ForwarderMetrics {
+
+    static final String STATS_PREFIX = "stats.shyhurricane.";
+
+    enum Counter {
+        MESSAGES_SEEN("messages.seen"),
+        SKIPPED_INITIATOR("messages.skipped.initiator"),
+        SKIPPED_SCOPE("messages.skipped.scope"),
+        SKIPPED_CONTENT_TYPE("messages.skipped.contentType"),
+        SKIPPED_DUPLICATE("messages.skipped.duplicate"),
+        SKIPPED_DUPLICATE_BYTES("messages.skipped.duplicateBytes"),
+        SKIPPED_NEAR_DUPLICATE("messages.skipped.nearDuplicate"),
+        SKIPPED_SAMPLED("messages.skipped.sampled"),
+        SKIPPED_RATE_LIMITED("messages.skipped.rateLimited"),
+        SCOPE_CACHE_HITS("scope.cache.hits"),
+        SCOPE_CACHE_MISSES("scope.cache.misses"),
+        QUEUED("messages.queued"),
+        INDEX_SENT("index.sent"),
+        INDEX_FAILED("index.failed"),
+        FINDINGS_SENT("findings.sent"),
+        FINDINGS_FAILED("findings.failed"),
+        SPOOL_REPLAYED("spool.replayed"),
+        HTTP_REQUESTS("http.requests"),
+        HTTP_ERRORS("http.errors"),
+        HTTP_THROTTLED("http.throttled"),
+        BYTES_SENT("http.bytesSent"),
+        REPLICA_SENT("replica.sent"),
+        REPLICA_FAILED("replica.failed");
+
+        final String key;
+        final String statsKey;
+
+        Counter(String key) {
+            this.key = key;
+            this.statsKey = STATS_PREFIX + key;
+        }
+    }
+
+    enum Gauge {
+        THROTTLE_UTILIZATION("http.throttle.utilizationPercent");
+
+        final String key;
+        final String statsKey;
+
+        Gauge(String key) {
+            this.key = key;
+            this.statsKey = STATS_PREFIX + key;
+        }
+    }
+
+    enum Timer {
+        SERIALIZATION("index.serialize"),
+        POST_RTT("http.rtt"),
+        THROTTLE_WAIT("http.throttleWait");
+
+        final String key;
+
+        Timer(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Upper bounds of the histogram buckets in microseconds, the last bucket is unbounded.
+     */
+    private static final long[] BUCKET_MICROS = {
+            50, 100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    /**
+     * Fixed bucket histogram, recording doesn't lock.
+     */
+    static final class Histogram {
+        private final String key;
+        private final String countStatsKey;
+        private final String sumStatsKey;
+        private final String maxStatsKey;
+        private final String[] bucketStatsKeys = new String[BUCKET_MICROS.length + 1];
+        private final String[] bucketKeys = new String[BUCKET_MICROS.length + 1];
+        private final LongAdder[] buckets = new LongAdder[BUCKET_MICROS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+        Histogram(String key) {
+            this.key = key;
+            this.countStatsKey = STATS_PREFIX + key + ".count";
+            this.sumStatsKey = STATS_PREFIX + key + ".sumMicros";
+            this.maxStatsKey = STATS_PREFIX + key + ".maxMicros";
+            for (int i = 0; i < buckets.length; i++) {
+                String bucket = key + ".le." + (i < BUCKET_MICROS.length ? label(BUCKET_MICROS[i]) : "inf");
+                bucketKeys[i] = bucket;
+                bucketStatsKeys[i] = STATS_PREFIX + bucket;
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+            int i = 0;
+            while (i < BUCKET_MICROS.length && micros > BUCKET_MICROS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            sumMicros.add(micros);
+            maxMicros.accumulate(micros);
+            Stats.incCounter(bucketStatsKeys[i]);
+            Stats.incCounter(countStatsKey);
+            Stats.incCounter(sumStatsKey, micros);
+            Stats.setHighwaterMark(maxStatsKey, micros);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the percentile, or the maximum for the last bucket
+         */
+        long percentileMicros(double percentile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_MICROS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return Math.min(BUCKET_MICROS[i], maxMicros.get());
+                }
+            }
+            return maxMicros.get();
+        }
+
+        void snapshot(Map<String, Object> into) {
+            long total = count.sum();
+            into.put(key + ".count", total);
+            into.put(key + ".meanMicros", total > 0 ? sumMicros.sum() / total : 0);
+            into.put(key + ".p50Micros", percentileMicros(50));
+            into.put(key + ".p90Micros", percentileMicros(90));
+            into.put(key + ".p99Micros", percentileMicros(99));
+            into.put(key + ".maxMicros", maxMicros.get());
+            for (int i = 0; i < buckets.length; i++) {
+                into.put(bucketKeys[i], buckets[i].sum());
+            }
+        }
+
+        private static String label(long micros) {
+            if (micros >= 1_000_000 && micros % 100_000 == 0) {
+                return micros % 1_000_000 == 0 ? micros / 1_000_000 + "s" : micros / 1_000_000.0 + "s";
+            }
+            if (micros >= 1_000 && micros % 100 == 0) {
+                return micros % 1_000 == 0 ? micros / 1_000 + "ms" : micros / 1_000.0 + "ms";
+            }
+            return micros + "us";
+        }
+    }
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final AtomicLong[] gauges = new AtomicLong[Gauge.values().length];
+    private final Histogram[] histograms = new Histogram[Timer.values().length];
+
+    ForwarderMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < gauges.length; i++) {
+            gauges[i] = new AtomicLong();
+        }
+        for (Timer timer : Timer.values()) {
+            histograms[timer.ordinal()] = new Histogram(timer.key);
+        }
+    }
+
+    void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+        Stats.incCounter(counter.statsKey);
+    }
+
+    void add(Counter counter, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        counters[counter.ordinal()].add(delta);
+        Stats.incCounter(counter.statsKey, delta);
+    }
+
+    /**
+     * Sets the current value of a gauge. ZAP's stats only keep counters, so the counter is moved by the change since
+     * the last value, and the high water mark keeps the peak.
+     */
+    void set(Gauge gauge, long value) {
+        long previous = gauges[gauge.ordinal()].getAndSet(value);
+        if (value != previous) {
+            Stats.incCounter(gauge.statsKey, value - previous);
+        }
+        Stats.setHighwaterMark(gauge.statsKey + ".max", value);
+    }
+
+    long get(Gauge gauge) {
+        return gauges[gauge.ordinal()].get();
+    }
+
+    void record(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+
+    long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    Histogram histogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    /**
+     * @return counters, gauges and histogram summaries keyed without the stats prefix, in a stable order
+     */
+    Map<String, Object> snapshot() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            map.put(counter.key, get(counter));
+        }
+        for (Gauge gauge : Gauge.values()) {
+            map.put(gauge.key, get(gauge));
+        }
+        for (Histogram histogram : histograms) {
+            histogram.snapshot(map);
+        }
+        return map;
+    }
+}
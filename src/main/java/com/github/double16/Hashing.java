@@ -0,0 +1,65 @@
+package com.github.double16;
+
+/**
+ * 64-bit non-cryptographic hashing for de-duplication keys.
+ */
+final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * FNV-1a over the UTF-16 chars, finished with a 64-bit mix so that similar strings spread over the whole range.
+     */
+    static long hash64(CharSequence s) {
+        return mix(update(start(), s));
+    }
+
+    /**
+     * The initial state of an incremental FNV-1a hash. Feed it to the {@code update} methods and finish with
+     * {@link #mix(long)}.
+     */
+    static long start() {
+        return FNV_OFFSET;
+    }
+
+    static long update(long h, CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    static long update(long h, byte[] b, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h ^= b[i] & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Adds a value as its own field, e.g. a length or a separator between variable length fields.
+     */
+    static long update(long h, long v) {
+        h ^= v;
+        h *= FNV_PRIME;
+        return h;
+    }
+
+    /**
+     * The finalizer of MurmurHash3.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
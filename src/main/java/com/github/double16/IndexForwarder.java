@@ -0,0 +1,739 @@
+package com.github.double16;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Forwards captured traffic entries to the ShyHurricane index endpoint from dedicated sender threads, so ZAP's
+ * sender threads only pay for capturing the entry and never for serializing it or the HTTP round trip. Entries are
+ * serialized straight into a buffer owned by the sender thread, which is reused for every post.
+ * <p>
+ * There are {@link ShyHurricaneOptionsParam#getIndexSenders()} senders, each with its own queue. Entries are assigned
+ * to a sender by the host of the request, so the entries for a host are delivered in capture order while different
+ * hosts are sent in parallel. The senders are virtual threads if {@link ShyHurricaneOptionsParam#isVirtualThreads()} is set
+ * and the JVM supports them.
+ * <p>
+ * When batching is enabled, entries are coalesced into one NDJSON body per flush, bounded by entry count, byte size
+ * and linger time. A batch only holds entries with the same {@link Sink#route(String)}, each sender keeps a batch
+ * open per route. If a server can't process NDJSON bodies, entries for it are posted one by one, see
+ * {@link BulkSupport}.
+ * <p>
+ * Entries the server couldn't accept are written to the disk spool if there is one. What happens to entries that
+ * don't fit in the queue is set by the {@link BackpressurePolicy}.
+ */
+class IndexForwarder {
+
+    /**
+     * Posts a body to an endpoint of the server.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * @return the HTTP status code
+         */
+        int post(String contentType, byte[] body, int offset, int length) throws Exception;
+
+        /**
+         * Picks where the documents of a target host are posted when there are several servers.
+         *
+         * @param host the target host, may be null
+         * @return compared with {@code equals}, a batch only holds documents with equal routes
+         */
+        default Object route(String host) {
+            return null;
+        }
+
+        /**
+         * Posts documents along a route from {@link #route(String)}.
+         *
+         * @return the HTTP status code
+         */
+        default int post(Object route, String contentType, byte[] body, int offset, int length) throws Exception {
+            return post(contentType, body, offset, length);
+        }
+
+        /**
+         * @return the server a route from {@link #route(String)} posts to, NDJSON support is tracked per server
+         */
+        default Object server(Object route) {
+            return null;
+        }
+    }
+
+    static final String JSON = "application/json";
+    static final String NDJSON = "application/x-ndjson";
+
+    private static final long POLL_MILLIS = 250;
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+    /**
+     * How long a sender that didn't drain in time gets to spool its batch after it's interrupted.
+     */
+    private static final long STOP_GRACE_MILLIS = 2_000;
+    /**
+     * Routes whose empty batches a lane keeps, to reuse their buffers.
+     */
+    private static final int MAX_IDLE_BATCHES = 16;
+
+    private final ShyHurricaneOptionsParam param;
+    private final Sink sink;
+    private final DiskSpool spool;
+    private final ForwarderMetrics metrics;
+    /**
+     * Created on first use, so the number of senders is read after the options are loaded.
+     */
+    private volatile Lane[] lanes;
+    /**
+     * Entries in all lanes. The queues are unbounded, the configured capacity is checked against this in
+     * {@link #offer(TrafficEntry)} so it can change at runtime.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * Dropped entries, indexed by the ordinal of the policy in effect when they were dropped.
+     */
+    private final AtomicLong[] dropped = new AtomicLong[BackpressurePolicy.values().length];
+    private final AtomicLong spilled = new AtomicLong();
+    /**
+     * Producers waiting for space under {@link BackpressurePolicy#BLOCK}, guarded by {@link #space}.
+     */
+    private final Object space = new Object();
+    private volatile int blockedProducers;
+    private volatile boolean running;
+    /**
+     * Set when the drain timed out, the senders spool what they hold instead of posting it.
+     */
+    private volatile boolean stopping;
+    private final BulkSupport bulk = new BulkSupport();
+    private boolean started;
+
+    /**
+     * @param spool receives undeliverable entries, may be null
+     */
+    IndexForwarder(ShyHurricaneOptionsParam param, Sink sink, DiskSpool spool, ForwarderMetrics metrics) {
+        this.param = param;
+        this.sink = sink;
+        this.spool = spool;
+        this.metrics = metrics;
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new AtomicLong();
+        }
+    }
+
+    synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        running = true;
+        ThreadFactory threads = SenderThreads.threadFactory("ShyHurricane-Sender", param);
+        for (Lane lane : lanes()) {
+            lane.start(threads);
+        }
+    }
+
+    private Lane[] lanes() {
+        Lane[] current = lanes;
+        if (current == null) {
+            synchronized (this) {
+                current = lanes;
+                if (current == null) {
+                    current = new Lane[Math.max(1, param.getIndexSenders())];
+                    for (int i = 0; i < current.length; i++) {
+                        current[i] = new Lane();
+                    }
+                    lanes = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the lane for the host of the entry's endpoint
+     */
+    static int laneIndex(String endpoint, int laneCount) {
+        if (laneCount <= 1 || endpoint == null) {
+            return 0;
+        }
+        int start = endpoint.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        int hash = 0;
+        while (end < endpoint.length()) {
+            char c = endpoint.charAt(end++);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            hash = 31 * hash + Character.toLowerCase(c);
+        }
+        // spread the bits, host names often differ only in their last characters
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, laneCount);
+    }
+
+    /**
+     * Queues an entry for sending. If the queue is full the backpressure policy decides what happens. Only the
+     * {@link BackpressurePolicy#BLOCK} policy waits.
+     * <p>
+     * The capacity check isn't atomic with the insert, concurrent producers may overshoot it by a few entries.
+     *
+     * @return true if the entry was queued or spooled
+     */
+    boolean offer(TrafficEntry entry) {
+        Lane[] current = lanes();
+        Lane lane = current[laneIndex(entry.endpoint(), current.length)];
+        CaptureConfig config = param.getCaptureConfig();
+        int capacity = Math.max(1, config.getIndexQueueCapacity());
+        if (queued.get() < capacity) {
+            return lane.enqueue(entry);
+        }
+        BackpressurePolicy policy = config.getBackpressurePolicy();
+        switch (policy) {
+            case BLOCK:
+                if (awaitSpace(capacity)) {
+                    return lane.enqueue(entry);
+                }
+                break;
+            case DROP_OLDEST:
+                if (dropOldest(current, lane)) {
+                    countDrop(policy);
+                }
+                return lane.enqueue(entry);
+            case SPILL_TO_DISK:
+                if (spill(entry)) {
+                    spilled.incrementAndGet();
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        countDrop(policy);
+        return false;
+    }
+
+    private boolean awaitSpace(int capacity) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(param.getIndexQueueBlockTimeoutMillis());
+        synchronized (space) {
+            blockedProducers++;
+            try {
+                while (queued.get() >= capacity) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(space, remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                blockedProducers--;
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest entry of the lane the new entry goes to, so other hosts aren't penalized, or of the next lane
+     * that has one.
+     */
+    private boolean dropOldest(Lane[] lanes, Lane preferred) {
+        if (preferred.dequeue() != null) {
+            return true;
+        }
+        for (Lane lane : lanes) {
+            if (lane.dequeue() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void countDrop(BackpressurePolicy policy) {
+        if (dropped[policy.ordinal()].getAndIncrement() % 1000 == 0) {
+            System.err.println("[ShyHurricaneForwarder] Index queue full, dropped " + getDropped()
+                    + " entries (policy " + policy + ")");
+        }
+    }
+
+    /**
+     * Runs on ZAP's sender thread, so it only waits for the local disk: spool replays post without holding the
+     * spool's lock.
+     */
+    private boolean spill(TrafficEntry entry) {
+        if (spool == null || !param.isSpoolEnabled()) {
+            return false;
+        }
+        BatchBuffer buffer = new BatchBuffer(4096);
+        try {
+            TrafficEntryWriter.write(entry, buffer);
+        } catch (IOException e) {
+            return false;
+        }
+        return spool.append(DiskSpool.KIND_INDEX, buffer.array(), 0, buffer.size());
+    }
+
+    /**
+     * Writes a serialized entry that wasn't posted to the spool, when the forwarder is closed.
+     */
+    private boolean spill(byte[] json, int offset, int length) {
+        return spool != null && spool.append(DiskSpool.KIND_INDEX, json, offset, length);
+    }
+
+    int size() {
+        return queued.get();
+    }
+
+    int senders() {
+        return lanes().length;
+    }
+
+    /**
+     * @return entries dropped under any policy
+     */
+    long getDropped() {
+        long total = 0;
+        for (AtomicLong count : dropped) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    long getDropped(BackpressurePolicy policy) {
+        return dropped[policy.ordinal()].get();
+    }
+
+    /**
+     * @return entries written to the spool because the queue was full or wasn't drained when closing
+     */
+    long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * @return true if no server is known not to support NDJSON
+     */
+    boolean isBulkSupported() {
+        return bulk.isSupportedEverywhere();
+    }
+
+    /**
+     * Stops accepting work and waits for the queued entries to be sent.
+     */
+    synchronized void close() {
+        close(DRAIN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops accepting work and waits up to the timeout for the queued entries to be sent. The entries still queued or
+     * batched after that are written to the spool.
+     */
+    synchronized void close(long drainTimeoutMillis) {
+        running = false;
+        synchronized (space) {
+            space.notifyAll();
+        }
+        if (!started) {
+            return;
+        }
+        started = false;
+        Lane[] current = lanes;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        for (Lane lane : current) {
+            lane.join(deadline);
+        }
+        stopping = true;
+        int discarded = 0;
+        for (Lane lane : current) {
+            discarded += lane.stop();
+        }
+        stopping = false;
+        if (discarded > 0) {
+            System.err.println("[ShyHurricaneForwarder] Index queue not drained and not spooled, discarding "
+                    + discarded + " entries");
+        }
+        queued.set(0);
+        // the sender count may have changed, the next start creates new lanes
+        lanes = null;
+    }
+
+    private static void logPostFailure(Exception e) {
+        // the breaker logs when it opens, not every entry it turns away
+        if (!(e instanceof CircuitBreaker.OpenException)) {
+            System.err.println("[ShyHurricaneForwarder] Error posting index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The open NDJSON batch of a lane for one route.
+     */
+    private static final class Batch {
+        final Object route;
+        final BatchBuffer buffer = new BatchBuffer();
+        /**
+         * End offset of each entry in {@link #buffer}, including its newline.
+         */
+        int[] offsets = new int[64];
+        int count;
+        long startedNanos;
+
+        Batch(Object route) {
+            this.route = route;
+        }
+
+        int start(int index) {
+            return index == 0 ? 0 : offsets[index - 1];
+        }
+
+        /**
+         * @return the length of an entry without the newline, which isn't part of the JSON document
+         */
+        int length(int index) {
+            return offsets[index] - start(index) - 1;
+        }
+    }
+
+    /**
+     * A queue and the sender thread that drains it. The batch state is only touched by the sender thread.
+     * <p>
+     * A lane has an open batch per route, so the hosts of a lane that go to different servers don't split each
+     * other's batches.
+     */
+    private final class Lane {
+        private final BlockingQueue<TrafficEntry> queue = new LinkedBlockingQueue<>();
+        private final Map<Object, Batch> batches = new LinkedHashMap<>();
+        /**
+         * Entries in all batches.
+         */
+        private int batched;
+        private Thread worker;
+
+        void start(ThreadFactory threads) {
+            worker = threads.newThread(this::drain);
+            worker.start();
+        }
+
+        boolean enqueue(TrafficEntry entry) {
+            if (queue.offer(entry)) {
+                queued.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        TrafficEntry dequeue() {
+            TrafficEntry entry = queue.poll();
+            if (entry != null) {
+                queued.decrementAndGet();
+            }
+            return entry;
+        }
+
+        void join(long deadlineNanos) {
+            if (worker == null) {
+                return;
+            }
+            try {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Interrupts the sender if it's still running, spools the queued entries and gives the sender time to spool
+         * its batches.
+         *
+         * @return the number of entries that couldn't be spooled
+         */
+        int stop() {
+            Thread current = worker;
+            worker = null;
+            boolean alive = current != null && current.isAlive();
+            if (alive) {
+                current.interrupt();
+            }
+            int discarded = 0;
+            for (TrafficEntry entry = queue.poll(); entry != null; entry = queue.poll()) {
+                if (spill(entry)) {
+                    spilled.incrementAndGet();
+                } else {
+                    discarded++;
+                }
+            }
+            if (alive) {
+                try {
+                    current.join(STOP_GRACE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return discarded;
+        }
+
+        private void drain() {
+            while ((running || !queue.isEmpty()) && !stopping) {
+                TrafficEntry entry;
+                try {
+                    entry = queue.poll(pollMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                try {
+                    if (entry != null) {
+                        queued.decrementAndGet();
+                        if (blockedProducers > 0) {
+                            synchronized (space) {
+                                space.notifyAll();
+                            }
+                        }
+                        accept(entry);
+                    }
+                    if (batched > 0) {
+                        flushExpired();
+                    }
+                } catch (Exception e) {
+                    System.err.println("[ShyHurricaneForwarder] Error posting index: " + e.getMessage());
+                }
+            }
+            if (stopping) {
+                spillBatches();
+                return;
+            }
+            try {
+                flushAll();
+            } catch (Exception e) {
+                System.err.println("[ShyHurricaneForwarder] Error posting index: " + e.getMessage());
+            }
+        }
+
+        /**
+         * @return how long to wait for an entry before the oldest batch has to be sent
+         */
+        private long pollMillis() {
+            if (batched == 0) {
+                return POLL_MILLIS;
+            }
+            long remaining = POLL_MILLIS;
+            for (Batch batch : batches.values()) {
+                if (batch.count > 0) {
+                    remaining = Math.min(remaining, param.getIndexBatchLingerMillis() - age(batch));
+                }
+            }
+            return Math.max(0, remaining);
+        }
+
+        private long age(Batch batch) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.startedNanos);
+        }
+
+        private void accept(TrafficEntry entry) throws Exception {
+            Object route = sink.route(ShardRouter.host(entry.endpoint()));
+            Batch batch = batches.computeIfAbsent(route, Batch::new);
+            BatchBuffer buffer = batch.buffer;
+            if (!param.isIndexBatchEnabled() || !bulk.isSupported(sink.server(route), System.currentTimeMillis())) {
+                flushAll();
+                try {
+                    write(entry, buffer);
+                    postOrSpool(route, buffer.array(), 0, buffer.size());
+                } finally {
+                    buffer.reset();
+                }
+                return;
+            }
+
+            int maxBytes = param.getIndexBatchMaxBytes();
+            int mark = buffer.size();
+            try {
+                write(entry, buffer);
+            } catch (IOException | RuntimeException e) {
+                buffer.truncate(mark);
+                throw e;
+            }
+            if (batch.count > 0 && buffer.size() + 1 > maxBytes) {
+                // the new entry doesn't fit, send what we have and start the next batch with it
+                byte[] json = Arrays.copyOfRange(buffer.array(), mark, buffer.size());
+                buffer.truncate(mark);
+                flush(batch);
+                buffer.write(json, 0, json.length);
+            }
+            buffer.write('\n');
+            if (batch.count == batch.offsets.length) {
+                batch.offsets = Arrays.copyOf(batch.offsets, batch.count * 2);
+            }
+            batch.offsets[batch.count++] = buffer.size();
+            batched++;
+            if (batch.count == 1) {
+                batch.startedNanos = System.nanoTime();
+            }
+            if (batch.count >= param.getIndexBatchMaxEntries() || buffer.size() >= maxBytes) {
+                flush(batch);
+            }
+        }
+
+        private void write(TrafficEntry entry, BatchBuffer buffer) throws IOException {
+            long start = System.nanoTime();
+            TrafficEntryWriter.write(entry, buffer);
+            metrics.record(ForwarderMetrics.Timer.SERIALIZATION, System.nanoTime() - start);
+        }
+
+        private void flushExpired() throws Exception {
+            for (Batch batch : batches.values()) {
+                if (batch.count > 0 && age(batch) >= param.getIndexBatchLingerMillis()) {
+                    flush(batch);
+                }
+            }
+            pruneBatches();
+        }
+
+        private void flushAll() throws Exception {
+            if (batched == 0) {
+                return;
+            }
+            for (Batch batch : batches.values()) {
+                flush(batch);
+            }
+            pruneBatches();
+        }
+
+        /**
+         * Forgets the empty batches when there are many, e.g. after the servers changed. Otherwise their buffers are
+         * kept for the next batch of their route.
+         */
+        private void pruneBatches() {
+            if (batches.size() > MAX_IDLE_BATCHES) {
+                batches.values().removeIf(batch -> batch.count == 0);
+            }
+        }
+
+        private void flush(Batch batch) throws Exception {
+            if (batch.count == 0) {
+                return;
+            }
+            try {
+                int status;
+                try {
+                    status = sink.post(batch.route, NDJSON, batch.buffer.array(), 0, batch.buffer.size());
+                } catch (Exception e) {
+                    logPostFailure(e);
+                    spoolBatch(batch);
+                    return;
+                }
+                if (BulkSupport.isRejected(status)) {
+                    boolean accepted = true;
+                    for (int i = 0; i < batch.count; i++) {
+                        int single = postOrSpool(batch.route, batch.buffer.array(), batch.start(i), batch.length(i));
+                        accepted &= single >= 200 && single < 400;
+                    }
+                    if (bulk.rejected(sink.server(batch.route), status, accepted, System.currentTimeMillis())) {
+                        System.err.println("[ShyHurricaneForwarder] Server rejected NDJSON batch with HTTP " + status
+                                + ", posting one request per entry for the next "
+                                + TimeUnit.MILLISECONDS.toMinutes(BulkSupport.REPROBE_MILLIS) + " minutes");
+                    }
+                } else if (ShyHurricaneClient.isRetryable(status)) {
+                    spoolBatch(batch);
+                } else if (status >= 400) {
+                    metrics.add(ForwarderMetrics.Counter.INDEX_FAILED, batch.count);
+                } else {
+                    metrics.add(ForwarderMetrics.Counter.INDEX_SENT, batch.count);
+                }
+            } finally {
+                reset(batch);
+            }
+        }
+
+        private void reset(Batch batch) {
+            batched -= batch.count;
+            batch.buffer.reset();
+            batch.count = 0;
+        }
+
+        /**
+         * @return the HTTP status code, -1 if the post failed
+         */
+        private int postOrSpool(Object route, byte[] body, int offset, int length) {
+            int status = -1;
+            try {
+                status = sink.post(route, JSON, body, offset, length);
+                if (!ShyHurricaneClient.isRetryable(status)) {
+                    metrics.increment(status >= 400 ? ForwarderMetrics.Counter.INDEX_FAILED : ForwarderMetrics.Counter.INDEX_SENT);
+                    return status;
+                }
+            } catch (Exception e) {
+                logPostFailure(e);
+            }
+            spool(body, offset, length);
+            return status;
+        }
+
+        private void spoolBatch(Batch batch) {
+            for (int i = 0; i < batch.count; i++) {
+                spool(batch.buffer.array(), batch.start(i), batch.length(i));
+            }
+        }
+
+        /**
+         * Spools the batches without posting them, the forwarder is closing.
+         */
+        private void spillBatches() {
+            int discarded = 0;
+            for (Batch batch : batches.values()) {
+                for (int i = 0; i < batch.count; i++) {
+                    if (spill(batch.buffer.array(), batch.start(i), batch.length(i))) {
+                        spilled.incrementAndGet();
+                    } else {
+                        discarded++;
+                    }
+                }
+                reset(batch);
+            }
+            if (discarded > 0) {
+                System.err.println("[ShyHurricaneForwarder] Index batch not sent and not spooled, discarding "
+                        + discarded + " entries");
+            }
+        }
+
+        private void spool(byte[] body, int offset, int length) {
+            // a post cut short by closing isn't a failure of the server
+            if (stopping && spill(body, offset, length)) {
+                spilled.incrementAndGet();
+                return;
+            }
+            metrics.increment(ForwarderMetrics.Counter.INDEX_FAILED);
+            if (spool != null) {
+                spool.append(DiskSpool.KIND_INDEX, body, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Growable buffer that exposes its backing array so batches are posted without another copy.
+     */
+    private static class BatchBuffer extends ByteArrayOutputStream {
+        BatchBuffer() {
+            this(64 * 1024);
+        }
+
+        BatchBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.double16;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sampling ratio and rate limit for each request initiator, parsed from the persisted format: comma separated
+ * {@code id:samplePercent:maxPerSecond} entries, e.g. {@code 2:10:50,4:1:0} forwards 10% of the active scanner's
+ * messages but at most 50 per second, and 1% of the fuzzer's. A rate of 0 is unlimited, initiators without an entry
+ * are forwarded in full. Immutable.
+ */
+final class InitiatorLimits {
+
+    record Limit(double samplePercent, int maxPerSecond) {
+
+        static final Limit NONE = new Limit(100, 0);
+
+        Limit {
+            samplePercent = Double.isNaN(samplePercent) ? 100 : Math.max(0, Math.min(100, samplePercent));
+            maxPerSecond = Math.max(0, maxPerSecond);
+        }
+
+        boolean isNone() {
+            return samplePercent >= 100 && maxPerSecond == 0;
+        }
+    }
+
+    static final InitiatorLimits NONE = new InitiatorLimits(new TreeMap<>());
+
+    /**
+     * IDs above this are kept in the map only, initiator IDs are small in practice.
+     */
+    private static final int MAX_DENSE_ID = 255;
+
+    private final Map<Integer, Limit> limits;
+    private final Limit[] byId;
+
+    private InitiatorLimits(TreeMap<Integer, Limit> limits) {
+        this.limits = Collections.unmodifiableMap(limits);
+        int size = limits.isEmpty() ? 0 : Math.min(limits.lastKey(), MAX_DENSE_ID) + 1;
+        this.byId = new Limit[size];
+        Arrays.fill(byId, Limit.NONE);
+        limits.forEach((id, limit) -> {
+            if (id < size) {
+                byId[id] = limit;
+            }
+        });
+    }
+
+    /**
+     * Ignores malformed entries and entries without a limit.
+     */
+    static InitiatorLimits parse(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return NONE;
+        }
+        TreeMap<Integer, Limit> limits = new TreeMap<>();
+        for (String entry : csv.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                continue;
+            }
+            try {
+                int id = Integer.parseInt(parts[0].trim());
+                Limit limit = new Limit(Double.parseDouble(parts[1].trim()),
+                        parts.length == 3 ? Integer.parseInt(parts[2].trim()) : 0);
+                if (id >= 0 && !limit.isNone()) {
+                    limits.put(id, limit);
+                }
+            } catch (NumberFormatException ignored) {
+                // ignore bad entries
+            }
+        }
+        return limits.isEmpty() ? NONE : new InitiatorLimits(limits);
+    }
+
+    /**
+     * @return the persisted format of the limits, without the entries that don't limit anything
+     */
+    static String format(Map<Integer, Limit> limits) {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(limits).forEach((id, limit) -> {
+            if (limit == null || limit.isNone()) {
+                return;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            double percent = limit.samplePercent();
+            sb.append(id).append(':');
+            if (percent == Math.rint(percent)) {
+                sb.append((long) percent);
+            } else {
+                sb.append(percent);
+            }
+            sb.append(':').append(limit.maxPerSecond());
+        });
+        return sb.toString();
+    }
+
+    Limit get(int initiator) {
+        if (initiator >= 0 && initiator < byId.length) {
+            return byId[initiator];
+        }
+        return initiator > MAX_DENSE_ID ? limits.getOrDefault(initiator, Limit.NONE) : Limit.NONE;
+    }
+
+    boolean isEmpty() {
+        return limits.isEmpty();
+    }
+
+    Map<Integer, Limit> asMap() {
+        return limits;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.double16;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Applies the {@link InitiatorLimits}: samples each initiator's messages at its ratio and then caps the sampled
+ * messages with a token bucket per initiator, with a burst of one second's worth. A bucket is replaced when the
+ * configured rate changes.
+ */
+class InitiatorThrottle {
+
+    private final ForwarderMetrics metrics;
+    private final LongSupplier nanoTime;
+    private final Map<Integer, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param nanoTime the clock of the token buckets, {@code System::nanoTime} outside of tests
+     */
+    InitiatorThrottle(ForwarderMetrics metrics, LongSupplier nanoTime) {
+        this.metrics = metrics;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return true if the message should be forwarded
+     */
+    boolean allow(int initiator, InitiatorLimits limits) {
+        if (limits.isEmpty()) {
+            return true;
+        }
+        InitiatorLimits.Limit limit = limits.get(initiator);
+        double percent = limit.samplePercent();
+        if (percent < 100 && ThreadLocalRandom.current().nextDouble(100) >= percent) {
+            metrics.increment(ForwarderMetrics.Counter.SKIPPED_SAMPLED);
+            return false;
+        }
+        int rate = limit.maxPerSecond();
+        if (rate <= 0) {
+            return true;
+        }
+        long nowNanos = nanoTime.getAsLong();
+        TokenBucket bucket = buckets.get(initiator);
+        if (bucket == null || bucket.getRatePerSecond() != rate) {
+            bucket = buckets.compute(initiator, (id, current) ->
+                    current != null && current.getRatePerSecond() == rate ? current : new TokenBucket(rate, rate, nowNanos));
+        }
+        if (!bucket.tryAcquire(1, nowNanos)) {
+            metrics.increment(ForwarderMetrics.Counter.SKIPPED_RATE_LIMITED);
+            return false;
+        }
+        return true;
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+}
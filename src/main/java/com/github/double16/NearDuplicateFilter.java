@@ -0,0 +1,208 @@
+package com.github.double16;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.parosproxy.paros.network.HttpBody;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpSender;
+
+/**
+ * Skips active scanner responses that are nearly the same as ones already forwarded. Attack variants of a request
+ * usually get the same page back with only the reflected payload changed, so indexing more than a few of them adds
+ * nothing.
+ * <p>
+ * Each response body is reduced to a 64-bit SimHash of its tokens, so bodies that share most tokens have hashes that
+ * differ in few bits. Responses are grouped by method, endpoint (see {@link ScopeCache#key}) and status, and within
+ * an endpoint a response joins the first cluster whose representative hash is within the configured Hamming
+ * distance. The first few responses of a cluster are forwarded, the rest are skipped. The number of endpoints and of
+ * clusters per endpoint are bounded, the least recently used are forgotten first.
+ * <p>
+ * A response only counts towards its cluster once {@link #forwarded} is called for it after it was queued, so a
+ * response dropped by the queue's backpressure doesn't take a representative's place.
+ */
+class NearDuplicateFilter {
+
+    static final int DEFAULT_MAX_ENDPOINTS = 2048;
+    static final int MAX_CLUSTERS_PER_ENDPOINT = 16;
+    /**
+     * Only the start of larger bodies is hashed.
+     */
+    static final int MAX_HASHED_BYTES = 64 * 1024;
+
+    /**
+     * The cluster key and SimHash of an active scanner response.
+     */
+    record Sample(String key, long simHash) {
+    }
+
+    /**
+     * Clusters of an endpoint, the most recently matched first.
+     */
+    private static final class Endpoint {
+        final long[] hashes = new long[MAX_CLUSTERS_PER_ENDPOINT];
+        final int[] counts = new int[MAX_CLUSTERS_PER_ENDPOINT];
+        int size;
+
+        /**
+         * @return the number of responses in the cluster the hash belongs to, 0 if there is none
+         */
+        int count(long simHash, int maxDistance) {
+            for (int i = 0; i < size; i++) {
+                if (Long.bitCount(hashes[i] ^ simHash) <= maxDistance) {
+                    return counts[i];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Adds the hash to its cluster, or starts a new one.
+         */
+        void add(long simHash, int maxDistance) {
+            for (int i = 0; i < size; i++) {
+                if (Long.bitCount(hashes[i] ^ simHash) <= maxDistance) {
+                    int count = counts[i] == Integer.MAX_VALUE ? counts[i] : counts[i] + 1;
+                    moveToFront(i, hashes[i], count);
+                    return;
+                }
+            }
+            if (size < hashes.length) {
+                size++;
+            }
+            // a full endpoint forgets its least recently matched cluster
+            moveToFront(size - 1, simHash, 1);
+        }
+
+        private void moveToFront(int index, long hash, int count) {
+            System.arraycopy(hashes, 0, hashes, 1, index);
+            System.arraycopy(counts, 0, counts, 1, index);
+            hashes[0] = hash;
+            counts[0] = count;
+        }
+    }
+
+    private final ShyHurricaneOptionsParam param;
+    private final ForwarderMetrics metrics;
+    private final Map<String, Endpoint> endpoints;
+
+    NearDuplicateFilter(ShyHurricaneOptionsParam param, ForwarderMetrics metrics) {
+        this(param, metrics, DEFAULT_MAX_ENDPOINTS);
+    }
+
+    NearDuplicateFilter(ShyHurricaneOptionsParam param, ForwarderMetrics metrics, int maxEndpoints) {
+        this.param = param;
+        this.metrics = metrics;
+        this.endpoints = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Endpoint> eldest) {
+                return size() > maxEndpoints;
+            }
+        };
+    }
+
+    /**
+     * @return the sample to pass to {@link #isNearDuplicate} and {@link #forwarded}, or null if the message isn't an
+     * active scanner response that's filtered
+     */
+    Sample sample(HttpMessage msg, int initiator) {
+        if (initiator != HttpSender.ACTIVE_SCANNER_INITIATOR || !param.getCaptureConfig().isNearDupEnabled()) {
+            return null;
+        }
+        String endpoint = ScopeCache.key(msg.getRequestHeader());
+        if (endpoint == null) {
+            return null;
+        }
+        String key = msg.getRequestHeader().getMethod() + ' ' + msg.getResponseHeader().getStatusCode() + ' ' + endpoint;
+        HttpBody body = msg.getResponseBody();
+        // outside the lock, this is the expensive part
+        return new Sample(key, simHash(body.getBytes(), Math.min(body.length(), MAX_HASHED_BYTES)));
+    }
+
+    /**
+     * @return true if enough near duplicates of the sample were forwarded already
+     */
+    boolean isNearDuplicate(Sample sample) {
+        if (sample == null) {
+            return false;
+        }
+        int count;
+        synchronized (this) {
+            Endpoint endpoint = endpoints.get(sample.key());
+            count = endpoint != null ? endpoint.count(sample.simHash(), param.getNearDupMaxDistance()) : 0;
+        }
+        if (count < Math.max(1, param.getNearDupRepresentatives())) {
+            return false;
+        }
+        metrics.increment(ForwarderMetrics.Counter.SKIPPED_NEAR_DUPLICATE);
+        return true;
+    }
+
+    /**
+     * Counts the sample in its cluster, once its message was queued. Near duplicates checked at the same time may
+     * all be forwarded, so a cluster can get a few more than the configured representatives.
+     */
+    void forwarded(Sample sample) {
+        if (sample == null) {
+            return;
+        }
+        synchronized (this) {
+            endpoints.computeIfAbsent(sample.key(), k -> new Endpoint())
+                    .add(sample.simHash(), param.getNearDupMaxDistance());
+        }
+    }
+
+    /**
+     * SimHash of the tokens in the first {@code length} bytes. A token is a run of letters, digits or non-ASCII
+     * bytes, so markup and punctuation separate tokens and a reflected payload changes few of them.
+     */
+    static long simHash(byte[] bytes, int length) {
+        int[] weights = new int[64];
+        int tokens = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTokenByte(bytes[i])) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            int start = i;
+            while (i < length && isTokenByte(bytes[i])) {
+                i++;
+            }
+            long h = Hashing.mix(Hashing.update(Hashing.start(), bytes, start, i - start));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((h >>> bit) & 1) != 0 ? 1 : -1;
+            }
+            tokens++;
+        }
+        if (tokens == 0) {
+            // nothing to compare, so only identical (empty) bodies are near each other
+            return 0;
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    private static boolean isTokenByte(byte b) {
+        return b < 0
+                || (b >= '0' && b <= '9')
+                || (b >= 'A' && b <= 'Z')
+                || (b >= 'a' && b <= 'z')
+                || b == '_';
+    }
+
+    synchronized int endpointCount() {
+        return endpoints.size();
+    }
+
+    synchronized void clear() {
+        endpoints.clear();
+    }
+}
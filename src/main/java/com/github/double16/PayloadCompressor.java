@@ -0,0 +1,108 @@
+package com.github.double16;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a payload in a single pass into a buffer that is reused for every payload, so compressing a body
+ * allocates nothing once the buffer has grown to the working size. Not thread safe, {@link ShyHurricaneClient} lends
+ * each one to a single post at a time. {@link #end()} frees the native deflaters.
+ */
+final class PayloadCompressor {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private byte[] buf = new byte[64 * 1024];
+    private int size;
+    private Deflater gzipDeflater;
+    private Deflater zlibDeflater;
+    private int level = Integer.MIN_VALUE;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @return the compressed size, the compressed bytes are in {@link #array()}
+     */
+    int compress(Compression compression, int level, byte[] data, int offset, int length) {
+        setLevel(level);
+        size = 0;
+        switch (compression) {
+            case GZIP:
+                append(GZIP_HEADER, 0, GZIP_HEADER.length);
+                deflate(gzipDeflater, data, offset, length);
+                crc.reset();
+                crc.update(data, offset, length);
+                ensureCapacity(GZIP_TRAILER_SIZE);
+                writeIntLE((int) crc.getValue());
+                writeIntLE(length);
+                break;
+            case DEFLATE:
+                deflate(zlibDeflater, data, offset, length);
+                break;
+            case NONE:
+            default:
+                append(data, offset, length);
+                break;
+        }
+        return size;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void end() {
+        if (gzipDeflater != null) {
+            gzipDeflater.end();
+            zlibDeflater.end();
+            gzipDeflater = null;
+            zlibDeflater = null;
+        }
+    }
+
+    private void setLevel(int newLevel) {
+        if (gzipDeflater == null) {
+            // gzip is a raw deflate stream with our own header and trailer, deflate is the zlib format
+            gzipDeflater = new Deflater(newLevel, true);
+            zlibDeflater = new Deflater(newLevel, false);
+        } else if (newLevel != level) {
+            gzipDeflater.setLevel(newLevel);
+            zlibDeflater.setLevel(newLevel);
+        }
+        level = newLevel;
+    }
+
+    private void deflate(Deflater deflater, byte[] data, int offset, int length) {
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            ensureCapacity(Math.max(8192, length / 4));
+            size += deflater.deflate(buf, size, buf.length - size);
+        }
+    }
+
+    private void append(byte[] data, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(data, offset, buf, size, length);
+        size += length;
+    }
+
+    private void writeIntLE(int v) {
+        buf[size++] = (byte) v;
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 24);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buf.length - size < extra) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.double16;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.commons.httpclient.URI;
+import org.parosproxy.paros.control.Control;
+import org.parosproxy.paros.extension.SessionChangedListener;
+import org.parosproxy.paros.model.Session;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+
+/**
+ * Remembers whether messages are in scope, so requests to the same endpoint don't evaluate the include and exclude
+ * regexes of every context again. Decisions are keyed by the lower case scheme, host and port and the path of the
+ * request, without the query, and the least recently used are evicted once the cache is full.
+ * <p>
+ * Registered as a session listener, everything is forgotten when the session or its scope changes. A decision
+ * evaluated while the cache was cleared isn't stored, so it can't outlive the scope it was made with.
+ */
+class ScopeCache implements SessionChangedListener {
+
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final Predicate<HttpMessage> evaluator;
+    private final ForwarderMetrics metrics;
+    private final Map<String, Boolean> decisions;
+    /**
+     * Incremented on every clear, guarded by {@code this}.
+     */
+    private long generation;
+
+    ScopeCache(ForwarderMetrics metrics) {
+        this(HttpMessage::isInScope, metrics, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param evaluator the uncached scope check
+     */
+    ScopeCache(Predicate<HttpMessage> evaluator, ForwarderMetrics metrics, int maxEntries) {
+        this.evaluator = evaluator;
+        this.metrics = metrics;
+        this.decisions = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    boolean isInScope(HttpMessage msg) {
+        String key = key(msg.getRequestHeader());
+        if (key == null) {
+            return evaluator.test(msg);
+        }
+        long evaluatedIn;
+        synchronized (this) {
+            Boolean cached = decisions.get(key);
+            if (cached != null) {
+                metrics.increment(ForwarderMetrics.Counter.SCOPE_CACHE_HITS);
+                return cached;
+            }
+            evaluatedIn = generation;
+        }
+        metrics.increment(ForwarderMetrics.Counter.SCOPE_CACHE_MISSES);
+        // outside the lock, this is the expensive part
+        boolean inScope = evaluator.test(msg);
+        synchronized (this) {
+            if (generation == evaluatedIn) {
+                decisions.put(key, inScope);
+            }
+        }
+        return inScope;
+    }
+
+    /**
+     * @return {@code scheme://host:port/path} in lower case except for the path, or null if the request has no URI
+     */
+    static String key(HttpRequestHeader header) {
+        URI uri = header != null ? header.getURI() : null;
+        if (uri == null) {
+            return null;
+        }
+        try {
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (scheme == null || host == null) {
+                return null;
+            }
+            String path = uri.getEscapedPath();
+            StringBuilder sb = new StringBuilder(scheme.length() + host.length() + 10 + (path != null ? path.length() : 1));
+            sb.append(scheme.toLowerCase(Locale.ROOT)).append("://").append(host.toLowerCase(Locale.ROOT))
+                    .append(':').append(uri.getPort());
+            if (path == null || path.isEmpty()) {
+                sb.append('/');
+            } else {
+                sb.append(path);
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    synchronized int size() {
+        return decisions.size();
+    }
+
+    synchronized void clear() {
+        decisions.clear();
+        generation++;
+    }
+
+    @Override
+    public void sessionChanged(Session session) {
+        clear();
+    }
+
+    @Override
+    public void sessionAboutToChange(Session session) {
+        clear();
+    }
+
+    @Override
+    public void sessionScopeChanged(Session session) {
+        clear();
+    }
+
+    @Override
+    public void sessionModeChanged(Control.Mode mode) {
+        // the mode doesn't change which messages are in scope
+    }
+}
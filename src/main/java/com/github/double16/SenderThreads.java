@@ -0,0 +1,203 @@
+package com.github.double16;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Creates the threads that post to the server. With {@link ShyHurricaneOptionsParam#isVirtualThreads()} and a JDK 21+
+ * runtime they are virtual threads, which cost almost nothing while blocked on a post, otherwise daemon platform
+ * threads. The add-on is compiled for Java 17, so virtual threads are looked up reflectively.
+ * <p>
+ * {@link #runAll(int, IntConsumer)} posts independent documents concurrently, at most
+ * {@link ShyHurricaneOptionsParam#getMaxInFlightRequests()} at a time.
+ */
+class SenderThreads implements AutoCloseable {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            // before JDK 21, platform threads only
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private final String name;
+    private final ShyHurricaneOptionsParam param;
+    private volatile ExecutorService executor;
+    private volatile Semaphore permits;
+    private volatile boolean virtual;
+    private volatile boolean closed;
+
+    /**
+     * @param name prefix of the thread names
+     */
+    SenderThreads(String name, ShyHurricaneOptionsParam param) {
+        this.name = name;
+        this.param = param;
+    }
+
+    static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return true if the options ask for virtual threads and the runtime has them
+     */
+    static boolean useVirtual(ShyHurricaneOptionsParam param) {
+        return param.isVirtualThreads() && isVirtualSupported();
+    }
+
+    /**
+     * @return a factory for virtual threads named {@code name-N} if {@link #useVirtual(ShyHurricaneOptionsParam)},
+     * otherwise for daemon platform threads
+     */
+    static ThreadFactory threadFactory(String name, ShyHurricaneOptionsParam param) {
+        if (useVirtual(param)) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("[ShyHurricaneForwarder] Virtual threads unavailable, using platform threads: " + e);
+            }
+        }
+        return platformThreadFactory(name);
+    }
+
+    private static ThreadFactory platformThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or a cached pool of daemon platform threads
+     */
+    static ExecutorService newExecutor(String name, ShyHurricaneOptionsParam param) {
+        if (useVirtual(param)) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory(name, param));
+            } catch (ReflectiveOperationException e) {
+                System.err.println("[ShyHurricaneForwarder] Virtual threads unavailable, using platform threads: " + e);
+            }
+        }
+        return Executors.newCachedThreadPool(platformThreadFactory(name));
+    }
+
+    /**
+     * Runs {@code task} for each index from 0 to {@code count - 1} and waits for all of them. Tasks run concurrently,
+     * capped by the maximum requests in flight. A single task runs on the calling thread.
+     */
+    void runAll(int count, IntConsumer task) {
+        if (count <= 1 || closed) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        ExecutorService exec = executor();
+        Semaphore limit = permits;
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                runRemaining(i, count, task, done);
+                break;
+            }
+            try {
+                exec.execute(() -> {
+                    try {
+                        task.accept(index);
+                    } finally {
+                        limit.release();
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // closed while running, finish on this thread
+                limit.release();
+                runRemaining(i, count, task, done);
+                break;
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runRemaining(int from, int count, IntConsumer task, CountDownLatch done) {
+        for (int i = from; i < count; i++) {
+            try {
+                task.accept(i);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * @return true if tasks run on virtual threads, false if on platform threads or nothing has run yet
+     */
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Built on first use because the options aren't loaded yet when the extension is hooked.
+     */
+    private ExecutorService executor() {
+        ExecutorService exec = executor;
+        if (exec == null) {
+            synchronized (this) {
+                exec = executor;
+                if (exec == null) {
+                    permits = new Semaphore(Math.max(1, param.getMaxInFlightRequests()));
+                    virtual = useVirtual(param);
+                    exec = newExecutor(name, param);
+                    executor = exec;
+                }
+            }
+        }
+        return exec;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
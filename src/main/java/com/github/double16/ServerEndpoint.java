@@ -0,0 +1,103 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Posts to one server endpoint, retrying connection errors and retryable statuses with jittered exponential backoff.
+ * A circuit breaker per endpoint stops sending while the server is failing, so callers spool entries instead of
+ * waiting on timeouts.
+ */
+class ServerEndpoint {
+
+    private final String name;
+    private final ShyHurricaneClient client;
+    private final ShyHurricaneOptionsParam param;
+    private final CircuitBreaker breaker;
+
+    ServerEndpoint(String name, ShyHurricaneClient client, ShyHurricaneOptionsParam param) {
+        this.name = name;
+        this.client = client;
+        this.param = param;
+        this.breaker = new CircuitBreaker(name, param);
+    }
+
+    /**
+     * @return the HTTP status code of the last attempt
+     * @throws CircuitBreaker.OpenException if the breaker is open and nothing was sent
+     */
+    int post(String url, String contentType, byte[] body, int offset, int length) throws IOException {
+        return post(url, contentType, body, offset, length, param.getRetryMaxAttempts());
+    }
+
+    /**
+     * @param maxAttempts the most attempts, 1 to not retry
+     * @return the HTTP status code of the last attempt
+     * @throws CircuitBreaker.OpenException if the breaker is open and nothing was sent
+     */
+    int post(String url, String contentType, byte[] body, int offset, int length, int maxAttempts) throws IOException {
+        maxAttempts = Math.max(1, maxAttempts);
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.tryAcquire()) {
+                throw new CircuitBreaker.OpenException(name);
+            }
+            int status = -1;
+            IOException error = null;
+            try {
+                status = client.post(url, contentType, body, offset, length);
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                breaker.onFailure();
+                throw e;
+            }
+            if (error == null && !ShyHurricaneClient.isRetryable(status)) {
+                // a 4xx means the server is up, the request is the problem
+                breaker.onSuccess();
+                return status;
+            }
+            breaker.onFailure();
+            if (error instanceof InterruptedIOException
+                    || attempt >= maxAttempts
+                    || breaker.getState() != CircuitBreaker.State.CLOSED) {
+                if (error != null) {
+                    throw error;
+                }
+                return status;
+            }
+            sleep(backoffMillis(attempt));
+        }
+    }
+
+    CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    /**
+     * @return false while the breaker turns requests away
+     */
+    boolean isAvailable() {
+        return breaker.isAvailable();
+    }
+
+    /**
+     * Half of the exponential delay is fixed and half is random, so senders that failed together don't retry
+     * together.
+     */
+    long backoffMillis(int attempt) {
+        long initial = Math.max(1, param.getRetryInitialBackoffMillis());
+        long cap = Math.min(param.getRetryMaxBackoffMillis(), initial << Math.min(attempt - 1, 20));
+        long half = Math.max(1, cap / 2);
+        return half + ThreadLocalRandom.current().nextLong(half);
+    }
+
+    private void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted retrying " + name);
+        }
+    }
+}
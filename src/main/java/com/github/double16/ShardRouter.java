@@ -0,0 +1,361 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Spreads traffic and findings over the servers in {@link ShyHurricaneOptionsParam#getMcpServerUrls()} by target
+ * host, so indexing scales out horizontally. Each server is a shard with its own endpoints and circuit breakers.
+ * <p>
+ * Hosts are placed on a consistent hash ring with {@link #VIRTUAL_NODES} points per shard, so a host always lands on
+ * the same shard and adding or removing a server only moves the hosts of that server. A shard whose breaker for the
+ * endpoint is open is skipped, its hosts move to the next shards on the ring until the breaker lets a probe through
+ * again. With {@link ShyHurricaneOptionsParam#isServersReplicate()} each post is also sent to the next available
+ * shard, on a best effort basis: a replica post is tried once, without retries, and a failure is counted but not
+ * spooled.
+ * <p>
+ * A {@link Route} is the primary and replica shard for a host. Batches group documents by route, so every document of
+ * a batch goes where its own host's route leads.
+ * <p>
+ * The ring is rebuilt when the URLs change, keeping the endpoints of servers that are still configured.
+ */
+class ShardRouter {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * One server.
+     */
+    static final class Shard {
+        private final String baseUrl;
+        private final ServerEndpoint index;
+        private final ServerEndpoint findings;
+
+        private Shard(String baseUrl, ShyHurricaneClient client, ShyHurricaneOptionsParam param, String indexPath,
+                      String findingsPath) {
+            this.baseUrl = baseUrl;
+            this.index = new ServerEndpoint(join(baseUrl, indexPath), client, param);
+            this.findings = new ServerEndpoint(join(baseUrl, findingsPath), client, param);
+        }
+
+        String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * @return true if neither endpoint's breaker is open
+         */
+        boolean isAvailable() {
+            return index.isAvailable() && findings.isAvailable();
+        }
+
+        private ServerEndpoint endpoint(boolean forIndex) {
+            return forIndex ? index : findings;
+        }
+    }
+
+    /**
+     * Where the documents of a host are posted.
+     *
+     * @param replica null unless replicating to a second shard
+     */
+    record Route(Shard primary, Shard replica) {
+    }
+
+    /**
+     * The shards and the ring built from one value of the URL option.
+     */
+    private record Ring(String source, Shard[] shards, long[] points, int[] owners) {
+    }
+
+    private final ShyHurricaneOptionsParam param;
+    private final Supplier<ShyHurricaneClient> client;
+    private final ForwarderMetrics metrics;
+    private final String indexPath;
+    private final String findingsPath;
+    private volatile Ring ring;
+
+    /**
+     * @param client the client, which is created after the router
+     */
+    ShardRouter(ShyHurricaneOptionsParam param, Supplier<ShyHurricaneClient> client, ForwarderMetrics metrics,
+                String indexPath, String findingsPath) {
+        this.param = param;
+        this.client = client;
+        this.metrics = metrics;
+        this.indexPath = indexPath;
+        this.findingsPath = findingsPath;
+    }
+
+    /**
+     * @return posts to the index endpoint of the shard for the host
+     */
+    IndexForwarder.Sink indexSink() {
+        return new RoutedSink(true);
+    }
+
+    /**
+     * @return posts to the findings endpoint of the shard for the host
+     */
+    IndexForwarder.Sink findingsSink() {
+        return new RoutedSink(false);
+    }
+
+    private final class RoutedSink implements IndexForwarder.Sink {
+        private final boolean index;
+
+        RoutedSink(boolean index) {
+            this.index = index;
+        }
+
+        @Override
+        public int post(String contentType, byte[] body, int offset, int length) throws IOException {
+            return post(route(null), contentType, body, offset, length);
+        }
+
+        @Override
+        public Route route(String host) {
+            Ring current = ring();
+            if (current.shards().length == 0) {
+                return null;
+            }
+            int[] route = ShardRouter.route(current, host, param.isServersReplicate(), index);
+            return new Route(current.shards()[route[0]], route.length > 1 ? current.shards()[route[1]] : null);
+        }
+
+        @Override
+        public Shard server(Object route) {
+            return route instanceof Route ? ((Route) route).primary() : null;
+        }
+
+        @Override
+        public int post(Object route, String contentType, byte[] body, int offset, int length) throws IOException {
+            Route r = route instanceof Route ? (Route) route : route(null);
+            if (r == null) {
+                throw new IOException("No ShyHurricane server URL configured");
+            }
+            int status = r.primary().endpoint(index).post(
+                    join(r.primary().baseUrl, path()), contentType, body, offset, length);
+            if (r.replica() != null) {
+                replicate(r.replica(), contentType, body, offset, length);
+            }
+            return status;
+        }
+
+        private void replicate(Shard shard, String contentType, byte[] body, int offset, int length) {
+            try {
+                // one attempt, the primary's sender shouldn't wait on backoff for a best effort copy
+                int status = shard.endpoint(index).post(join(shard.baseUrl, path()), contentType, body, offset, length,
+                        1);
+                metrics.increment(status >= 400 ? ForwarderMetrics.Counter.REPLICA_FAILED : ForwarderMetrics.Counter.REPLICA_SENT);
+            } catch (IOException e) {
+                metrics.increment(ForwarderMetrics.Counter.REPLICA_FAILED);
+            }
+        }
+
+        private String path() {
+            return index ? indexPath : findingsPath;
+        }
+    }
+
+    /**
+     * @param forIndex whose breakers decide if a shard is available
+     * @return the index of the primary shard, followed by the replica's if asked for and there is one
+     */
+    private static int[] route(Ring ring, String host, boolean replicate, boolean forIndex) {
+        Shard[] shards = ring.shards();
+        if (shards.length == 1) {
+            return new int[]{0};
+        }
+        long hash = Hashing.hash64(host != null ? host.toLowerCase(Locale.ROOT) : "");
+        int start = Arrays.binarySearch(ring.points(), hash);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        int primary = -1;
+        int points = ring.points().length;
+        for (int i = 0; i < points; i++) {
+            int owner = ring.owners()[(start + i) % points];
+            if (owner == primary || !shards[owner].endpoint(forIndex).isAvailable()) {
+                continue;
+            }
+            if (primary < 0) {
+                primary = owner;
+                if (!replicate) {
+                    break;
+                }
+            } else {
+                return new int[]{primary, owner};
+            }
+        }
+        if (primary < 0) {
+            // nothing is available, use the host's own shard so the post fails fast and is spooled
+            primary = ring.owners()[start % points];
+        }
+        return new int[]{primary};
+    }
+
+    private Ring ring() {
+        Ring current = ring;
+        String source = param.getMcpServerUrl();
+        if (current == null || !current.source().equals(source)) {
+            synchronized (this) {
+                current = ring;
+                if (current == null || !current.source().equals(source)) {
+                    current = build(source != null ? source : "", current);
+                    ring = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Ring build(String source, Ring previous) {
+        Map<String, Shard> existing = new HashMap<>();
+        if (previous != null) {
+            for (Shard shard : previous.shards()) {
+                existing.put(shard.baseUrl, shard);
+            }
+        }
+        List<String> urls = param.getMcpServerUrls();
+        Shard[] shards = new Shard[urls.size()];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = existing.get(urls.get(i));
+            shards[i] = shard != null ? shard : new Shard(urls.get(i), client.get(), param, indexPath, findingsPath);
+        }
+
+        long[] points = new long[shards.length * VIRTUAL_NODES];
+        int[] owners = new int[points.length];
+        long[][] sorted = new long[points.length][];
+        for (int s = 0, p = 0; s < shards.length; s++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++, p++) {
+                sorted[p] = new long[]{Hashing.hash64(shards[s].baseUrl + "#" + v), s};
+            }
+        }
+        Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+        for (int p = 0; p < sorted.length; p++) {
+            points[p] = sorted[p][0];
+            owners[p] = (int) sorted[p][1];
+        }
+        return new Ring(source, shards, points, owners);
+    }
+
+    /**
+     * @return the shards for the current URLs
+     */
+    List<Shard> shards() {
+        return List.of(ring().shards());
+    }
+
+    /**
+     * The state of the endpoints, for the metrics. The breaker states are the worst over all shards.
+     */
+    void putStates(Map<String, Object> map) {
+        Shard[] shards = ring().shards();
+        CircuitBreaker.State index = CircuitBreaker.State.CLOSED;
+        CircuitBreaker.State findings = CircuitBreaker.State.CLOSED;
+        int available = 0;
+        for (Shard shard : shards) {
+            index = worst(index, shard.index.getState());
+            findings = worst(findings, shard.findings.getState());
+            if (shard.isAvailable()) {
+                available++;
+            }
+        }
+        map.put("index.breaker", index.name());
+        map.put("findings.breaker", findings.name());
+        map.put("servers.count", shards.length);
+        map.put("servers.available", available);
+    }
+
+    private static CircuitBreaker.State worst(CircuitBreaker.State a, CircuitBreaker.State b) {
+        if (a == CircuitBreaker.State.OPEN || b == CircuitBreaker.State.OPEN) {
+            return CircuitBreaker.State.OPEN;
+        }
+        return a == CircuitBreaker.State.HALF_OPEN ? a : b;
+    }
+
+    /**
+     * Joins a base URL and a path with a single slash.
+     */
+    static String join(String base, String path) {
+        StringBuilder sb = new StringBuilder(base);
+        if (sb.length() == 0 || sb.charAt(sb.length() - 1) != '/') {
+            sb.append('/');
+        }
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        sb.append(path);
+        return sb.toString();
+    }
+
+    /**
+     * @return the host of a URL, or null if it has none
+     */
+    static String host(String url) {
+        if (url == null) {
+            return null;
+        }
+        int start = url.indexOf("://");
+        if (start < 0) {
+            return null;
+        }
+        start += 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end);
+    }
+
+    /**
+     * Reads the host a spooled document belongs to, from the {@code request.endpoint} of a traffic entry or the
+     * {@code target} of a finding.
+     *
+     * @return null if the document has neither
+     */
+    static String routingHost(byte[] json, int offset, int length) {
+        try (JsonParser parser = FACTORY.createParser(json, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_STRING && "target".equals(name)) {
+                    return host(parser.getText());
+                }
+                if (value == JsonToken.START_OBJECT && "request".equals(name)) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        if (parser.nextToken() == JsonToken.VALUE_STRING && "endpoint".equals(field)) {
+                            return host(parser.getText());
+                        }
+                        parser.skipChildren();
+                    }
+                    continue;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // not JSON, use the default shard
+        }
+        return null;
+    }
+}
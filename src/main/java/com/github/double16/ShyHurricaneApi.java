@@ -0,0 +1,37 @@
+package com.github.double16;
+
+import net.sf.json.JSONObject;
+import org.zaproxy.zap.extension.api.ApiException;
+import org.zaproxy.zap.extension.api.ApiImplementor;
+import org.zaproxy.zap.extension.api.ApiResponse;
+import org.zaproxy.zap.extension.api.ApiResponseSet;
+import org.zaproxy.zap.extension.api.ApiView;
+
+/**
+ * ZAP API for the forwarder, e.g. {@code /JSON/shyHurricane/view/metrics/}.
+ */
+public class ShyHurricaneApi extends ApiImplementor {
+
+    private static final String PREFIX = "shyHurricane";
+    private static final String VIEW_METRICS = "metrics";
+
+    private final ExtensionShyHurricaneForwarder extension;
+
+    public ShyHurricaneApi(ExtensionShyHurricaneForwarder extension) {
+        this.extension = extension;
+        addApiView(new ApiView(VIEW_METRICS));
+    }
+
+    @Override
+    public String getPrefix() {
+        return PREFIX;
+    }
+
+    @Override
+    public ApiResponse handleApiView(String name, JSONObject params) throws ApiException {
+        if (VIEW_METRICS.equals(name)) {
+            return new ApiResponseSet<>(name, extension.getMetricsSnapshot());
+        }
+        throw new ApiException(ApiException.Type.BAD_VIEW, name);
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP client for posting to the ShyHurricane server. Connections are pooled and kept alive between
+ * requests, every request has connect and response timeouts, and the number of requests in flight is capped so a
+ * slow server can't tie up an unbounded number of threads. Bodies can be sent with gzip or deflate Content-Encoding.
+ * Posts are throttled to the configured bytes and requests per second.
+ */
+class ShyHurricaneClient implements AutoCloseable {
+
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    /**
+     * Idle compressors kept for reuse. A compressor holds a growing buffer and two native deflaters, so senders
+     * borrow one per post instead of keeping one per thread, which costs a new compressor for every virtual thread.
+     */
+    static final int MAX_IDLE_COMPRESSORS = 8;
+
+    private final ShyHurricaneOptionsParam param;
+    private final ForwarderMetrics metrics;
+    private final UploadThrottle throttle;
+    private volatile ExecutorService executor;
+    private volatile HttpClient httpClient;
+    private volatile Semaphore inFlight;
+    private volatile boolean closed;
+    private volatile boolean compressionRejected;
+    private final BlockingQueue<PayloadCompressor> compressors = new ArrayBlockingQueue<>(MAX_IDLE_COMPRESSORS);
+
+    ShyHurricaneClient(ShyHurricaneOptionsParam param, ForwarderMetrics metrics) {
+        this.param = param;
+        this.metrics = metrics;
+        this.throttle = new UploadThrottle(param, metrics);
+    }
+
+    /**
+     * @return true if the server may accept the same request later
+     */
+    static boolean isRetryable(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+
+    /**
+     * POST the body and wait for the response, which is read fully and discarded so the connection can be reused.
+     * Bodies at or over the configured threshold are compressed. If the server answers a compressed body with
+     * 415 Unsupported Media Type, the body is re-sent uncompressed and compression stays off.
+     *
+     * @return the HTTP status code
+     */
+    int post(String url, String contentType, byte[] body, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("client is closed");
+        }
+        Compression compression = param.getCompression();
+        if (compression != Compression.NONE && !compressionRejected && length >= param.getCompressionMinBytes()) {
+            PayloadCompressor compressor = borrowCompressor();
+            int status;
+            try {
+                int compressedLength = compressor.compress(compression, param.getCompressionLevel(), body, offset, length);
+                status = send(url, contentType, compression.getContentEncoding(), compressor.array(), 0, compressedLength);
+            } finally {
+                // the request body is the compressor's buffer, only reusable once the response has arrived
+                releaseCompressor(compressor);
+            }
+            if (status != HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                return status;
+            }
+            compressionRejected = true;
+            System.err.println("[ShyHurricaneForwarder] Server rejected Content-Encoding " + compression.getContentEncoding()
+                    + ", sending uncompressed");
+        }
+        return send(url, contentType, null, body, offset, length);
+    }
+
+    private int send(String url, String contentType, String contentEncoding, byte[] body, int offset, int length)
+            throws IOException {
+        HttpClient http = httpClient();
+        Duration requestTimeout = Duration.ofMillis(param.getRequestTimeoutMillis());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body, offset, length));
+        if (contentEncoding != null) {
+            builder.header("Content-Encoding", contentEncoding);
+        }
+        HttpRequest request = builder.build();
+        try {
+            // before taking a slot, so a throttled sender doesn't hold one while it waits
+            throttle.acquire(length);
+            if (!inFlight.tryAcquire(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Too many requests in flight to " + url);
+            }
+            metrics.increment(ForwarderMetrics.Counter.HTTP_REQUESTS);
+            metrics.add(ForwarderMetrics.Counter.BYTES_SENT, length);
+            long start = System.nanoTime();
+            try {
+                int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status >= 400) {
+                    metrics.increment(ForwarderMetrics.Counter.HTTP_ERRORS);
+                    if (!(contentEncoding != null && status == HTTP_UNSUPPORTED_MEDIA_TYPE)) {
+                        System.err.println("[ShyHurricaneForwarder] Failed to POST " + url + ": HTTP " + status);
+                    }
+                }
+                return status;
+            } catch (IOException e) {
+                metrics.increment(ForwarderMetrics.Counter.HTTP_ERRORS);
+                throw e;
+            } finally {
+                metrics.record(ForwarderMetrics.Timer.POST_RTT, System.nanoTime() - start);
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted posting to " + url);
+        }
+    }
+
+    /**
+     * Refreshes the throttle utilization gauge, which is otherwise only updated by posts.
+     *
+     * @return the share of the upload throttle in use, see {@link UploadThrottle#utilization()}
+     */
+    double getThrottleUtilization() {
+        return throttle.utilization();
+    }
+
+    /**
+     * The client is built on first use because the options aren't loaded yet when the extension is hooked.
+     */
+    private HttpClient httpClient() {
+        HttpClient http = httpClient;
+        if (http == null) {
+            synchronized (this) {
+                http = httpClient;
+                if (http == null) {
+                    inFlight = new Semaphore(Math.max(1, param.getMaxInFlightRequests()));
+                    executor = SenderThreads.newExecutor("ShyHurricane-HttpClient", param);
+                    http = HttpClient.newBuilder()
+                            .version(param.isHttp2Enabled() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                            .connectTimeout(Duration.ofMillis(param.getConnectTimeoutMillis()))
+                            .followRedirects(HttpClient.Redirect.NEVER)
+                            .executor(executor)
+                            .build();
+                    httpClient = http;
+                }
+            }
+        }
+        return http;
+    }
+
+    private PayloadCompressor borrowCompressor() {
+        PayloadCompressor compressor = compressors.poll();
+        return compressor != null ? compressor : new PayloadCompressor();
+    }
+
+    private void releaseCompressor(PayloadCompressor compressor) {
+        if (closed || !compressors.offer(compressor)) {
+            compressor.end();
+        } else if (closed) {
+            // closed while it was being returned
+            endCompressors();
+        }
+    }
+
+    private void endCompressors() {
+        PayloadCompressor compressor;
+        while ((compressor = compressors.poll()) != null) {
+            compressor.end();
+        }
+    }
+
+    /**
+     * @return the number of idle compressors
+     */
+    int idleCompressors() {
+        return compressors.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        endCompressors();
+        // HttpClient has no close() before JDK 21, its selector thread exits once the client is unreachable
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -13,7 +13,9 @@ import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 
 import org.parosproxy.paros.core.scanner.Alert;
 import org.parosproxy.paros.view.AbstractParamPanel;
@@ -49,10 +51,26 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
     };
     private final JComboBox<String> cmbRisk = new JComboBox<>(RISK_LABELS);
 
+    private final JSpinner spnQueueCapacity = new JSpinner(
+            new SpinnerNumberModel(10_000, 1, ShyHurricaneOptionsParam.MAX_INDEX_QUEUE_CAPACITY, 1000));
+
+    private static final String[] BACKPRESSURE_LABELS = {
+            "Block ZAP (with timeout)", "Drop newest", "Drop oldest", "Spill to disk"
+    };
+    private static final BackpressurePolicy[] BACKPRESSURE_VALUES = {
+            BackpressurePolicy.BLOCK,
+            BackpressurePolicy.DROP_NEWEST,
+            BackpressurePolicy.DROP_OLDEST,
+            BackpressurePolicy.SPILL_TO_DISK
+    };
+    private final JComboBox<String> cmbBackpressure = new JComboBox<>(BACKPRESSURE_LABELS);
+
     // Initiators filtering UI
     private final JCheckBox chkAllInitiators = new JCheckBox("All request initiators");
     private final JPanel initiatorsPanel = new JPanel(new GridBagLayout());
     private final Map<Integer, JCheckBox> initiatorBoxes = new LinkedHashMap<>();
+    private final Map<Integer, JSpinner> sampleSpinners = new LinkedHashMap<>();
+    private final Map<Integer, JSpinner> rateSpinners = new LinkedHashMap<>();
 
     public ShyHurricaneOptionsPanel(ExtensionShyHurricaneForwarder ext) {
         this.extension = ext;
@@ -69,7 +87,7 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
 
         // MCP server URL
         gbc.gridy++;
-        add(new JLabel("MCP server URL:"), gbc);
+        add(new JLabel("MCP server URLs (comma separated):"), gbc);
         gbc.gridx = 1;
         gbc.weightx = 1.0;
         gbc.fill = GridBagConstraints.HORIZONTAL;
@@ -91,6 +109,19 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
         gbc.gridx = 1;
         add(cmbRisk, gbc);
 
+        // Send queue
+        gbc.gridx = 0;
+        gbc.gridy++;
+        add(new JLabel("Queue capacity:"), gbc);
+        gbc.gridx = 1;
+        add(spnQueueCapacity, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        add(new JLabel("When queue is full:"), gbc);
+        gbc.gridx = 1;
+        add(cmbBackpressure, gbc);
+
         // Divider / label for initiators
         gbc.gridx = 0;
         gbc.gridy++;
@@ -134,12 +165,20 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
         cmbRisk.setSelectedIndex(
                 indexOf(RISK_VALUES, extension.getMinimumRiskLevel()));
 
+        // Send queue
+        spnQueueCapacity.setValue(ShyHurricaneOptionsParam.clampIndexQueueCapacity(extension.getIndexQueueCapacity()));
+        cmbBackpressure.setSelectedIndex(
+                Math.max(0, List.of(BACKPRESSURE_VALUES).indexOf(extension.getBackpressurePolicy())));
+
         // Initiators
         chkAllInitiators.setSelected(extension.isInitiatorsAll());
         var selectedCsv = extension.getInitiatorsSelectedCsv();
         var selectedIds = parseCsv(selectedCsv);
         initiatorBoxes.forEach((id, cb) -> cb.setSelected(selectedIds.contains(id)));
         setInitiatorBoxesEnabled(!chkAllInitiators.isSelected());
+        var limits = InitiatorLimits.parse(extension.getInitiatorLimitsCsv());
+        sampleSpinners.forEach((id, spn) -> spn.setValue(limits.get(id).samplePercent()));
+        rateSpinners.forEach((id, spn) -> spn.setValue(limits.get(id).maxPerSecond()));
     }
 
     @Override
@@ -151,6 +190,9 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
                 CONFIDENCE_VALUES[cmbConfidence.getSelectedIndex()]);
         extension.setMinimumRiskLevel(
                 RISK_VALUES[cmbRisk.getSelectedIndex()]);
+        extension.setIndexQueueCapacity((Integer) spnQueueCapacity.getValue());
+        extension.setBackpressurePolicy(
+                BACKPRESSURE_VALUES[cmbBackpressure.getSelectedIndex()]);
 
         // Initiators
         extension.setInitiatorsAll(chkAllInitiators.isSelected());
@@ -162,6 +204,12 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
             initiatorBoxes.forEach((id, cb) -> { if (cb.isSelected()) ids.add(id); });
             extension.setInitiatorsSelectedCsv(joinCsv(ids));
         }
+        // keep the limits of initiators that aren't listed
+        Map<Integer, InitiatorLimits.Limit> limits =
+                new LinkedHashMap<>(InitiatorLimits.parse(extension.getInitiatorLimitsCsv()).asMap());
+        sampleSpinners.forEach((id, spn) -> limits.put(id, new InitiatorLimits.Limit(
+                ((Number) spn.getValue()).doubleValue(), ((Number) rateSpinners.get(id).getValue()).intValue())));
+        extension.setInitiatorLimitsCsv(InitiatorLimits.format(limits));
     }
 
     @Override
@@ -199,18 +247,29 @@ public class ShyHurricaneOptionsPanel extends AbstractParamPanel {
             }
         }
 
-        // Render as a grid, 2 columns
+        // One row per initiator: checkbox, sampling ratio, rate limit (0 = unlimited)
         GridBagConstraints g = new GridBagConstraints();
         g.gridx = g.gridy = 0;
         g.anchor = GridBagConstraints.WEST;
         g.insets = new Insets(2, 12, 2, 6);
-        int col = 0;
         for (Map.Entry<Integer, String> e : discovered.entrySet()) {
             JCheckBox cb = new JCheckBox(e.getValue());
+            JSpinner sample = new JSpinner(new SpinnerNumberModel(100.0, 0.0, 100.0, 1.0));
+            JSpinner rate = new JSpinner(new SpinnerNumberModel(0, 0, 1_000_000, 10));
             initiatorBoxes.put(e.getKey(), cb);
+            sampleSpinners.put(e.getKey(), sample);
+            rateSpinners.put(e.getKey(), rate);
+            g.gridx = 0;
             initiatorsPanel.add(cb, g);
-            col++;
-            if (col == 2) { col = 0; g.gridx = 0; g.gridy++; } else { g.gridx++; }
+            g.gridx++;
+            initiatorsPanel.add(new JLabel("Sample %:"), g);
+            g.gridx++;
+            initiatorsPanel.add(sample, g);
+            g.gridx++;
+            initiatorsPanel.add(new JLabel("Max per second:"), g);
+            g.gridx++;
+            initiatorsPanel.add(rate, g);
+            g.gridy++;
         }
     }
 
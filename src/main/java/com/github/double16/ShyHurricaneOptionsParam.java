@@ -1,5 +1,8 @@
 package com.github.double16;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.parosproxy.paros.common.AbstractParam;
 import org.parosproxy.paros.core.scanner.Alert;
 
@@ -13,6 +16,53 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
     private static final String KEY_MIN_RISK = BASE_KEY + "minRisk";
     private static final String KEY_INITIATORS_ALL = BASE_KEY + "initiators.all";
     private static final String KEY_INITIATORS_SELECTED = BASE_KEY + "initiators.selected"; // CSV of ints
+    private static final String KEY_INITIATORS_LIMITS = BASE_KEY + "initiators.limits"; // CSV of id:percent:perSecond
+    private static final String KEY_INDEX_BATCH_ENABLED = BASE_KEY + "index.batch.enabled";
+    private static final String KEY_INDEX_BATCH_MAX_ENTRIES = BASE_KEY + "index.batch.maxEntries";
+    private static final String KEY_INDEX_BATCH_MAX_BYTES = BASE_KEY + "index.batch.maxBytes";
+    private static final String KEY_INDEX_BATCH_LINGER_MS = BASE_KEY + "index.batch.lingerMs";
+    private static final String KEY_HTTP_CONNECT_TIMEOUT_MS = BASE_KEY + "http.connectTimeoutMs";
+    private static final String KEY_HTTP_REQUEST_TIMEOUT_MS = BASE_KEY + "http.requestTimeoutMs";
+    private static final String KEY_HTTP_MAX_IN_FLIGHT = BASE_KEY + "http.maxInFlight";
+    private static final String KEY_HTTP_HTTP2 = BASE_KEY + "http.http2";
+    private static final String KEY_BODY_REQUEST_MAX_BYTES = BASE_KEY + "body.request.maxBytes";
+    private static final String KEY_BODY_RESPONSE_MAX_BYTES = BASE_KEY + "body.response.maxBytes";
+    private static final String KEY_BODY_LIMIT_POLICY = BASE_KEY + "body.limitPolicy";
+    private static final String KEY_COMPRESSION = BASE_KEY + "compression";
+    private static final String KEY_COMPRESSION_MIN_BYTES = BASE_KEY + "compression.minBytes";
+    private static final String KEY_COMPRESSION_LEVEL = BASE_KEY + "compression.level";
+    private static final String KEY_ALERT_DEDUP_TTL_MINUTES = BASE_KEY + "alerts.dedup.ttlMinutes";
+    private static final String KEY_ALERT_DEDUP_MAX_ENTRIES = BASE_KEY + "alerts.dedup.maxEntries";
+    private static final String KEY_FINDINGS_FLUSH_MAX_DELAY_MS = BASE_KEY + "findings.flush.maxDelayMs";
+    private static final String KEY_FINDINGS_FLUSH_HIGH_RISK_DELAY_MS = BASE_KEY + "findings.flush.highRiskDelayMs";
+    private static final String KEY_FINDINGS_FLUSH_BATCH_SIZE = BASE_KEY + "findings.flush.batchSize";
+    private static final String KEY_FINDINGS_FLUSH_MIN_INTERVAL_MS = BASE_KEY + "findings.flush.minIntervalMs";
+    private static final String KEY_SPOOL_ENABLED = BASE_KEY + "spool.enabled";
+    private static final String KEY_SPOOL_MAX_MB = BASE_KEY + "spool.maxMegabytes";
+    private static final String KEY_RETRY_MAX_ATTEMPTS = BASE_KEY + "retry.maxAttempts";
+    private static final String KEY_RETRY_INITIAL_BACKOFF_MS = BASE_KEY + "retry.initialBackoffMs";
+    private static final String KEY_RETRY_MAX_BACKOFF_MS = BASE_KEY + "retry.maxBackoffMs";
+    private static final String KEY_BREAKER_FAILURE_THRESHOLD = BASE_KEY + "breaker.failureThreshold";
+    private static final String KEY_BREAKER_OPEN_MS = BASE_KEY + "breaker.openMs";
+    private static final String KEY_INDEX_QUEUE_CAPACITY = BASE_KEY + "index.queue.capacity";
+    private static final String KEY_INDEX_QUEUE_POLICY = BASE_KEY + "index.queue.policy";
+    private static final String KEY_INDEX_QUEUE_BLOCK_TIMEOUT_MS = BASE_KEY + "index.queue.blockTimeoutMs";
+    private static final String KEY_FINDINGS_BATCH_ENABLED = BASE_KEY + "findings.batch.enabled";
+    private static final String KEY_FINDINGS_BATCH_MAX_ENTRIES = BASE_KEY + "findings.batch.maxEntries";
+    private static final String KEY_FINDINGS_BATCH_MAX_BYTES = BASE_KEY + "findings.batch.maxBytes";
+    private static final String KEY_INDEX_SENDERS = BASE_KEY + "index.senders";
+    private static final String KEY_HTTP_VIRTUAL_THREADS = BASE_KEY + "http.virtualThreads";
+    private static final String KEY_TRAFFIC_DEDUP_ENABLED = BASE_KEY + "traffic.dedup.enabled";
+    private static final String KEY_TRAFFIC_DEDUP_WINDOW_SECONDS = BASE_KEY + "traffic.dedup.windowSeconds";
+    private static final String KEY_TRAFFIC_DEDUP_MAX_ENTRIES = BASE_KEY + "traffic.dedup.maxEntries";
+    private static final String KEY_NEAR_DUP_ENABLED = BASE_KEY + "traffic.nearDup.enabled";
+    private static final String KEY_NEAR_DUP_MAX_DISTANCE = BASE_KEY + "traffic.nearDup.maxDistance";
+    private static final String KEY_NEAR_DUP_REPRESENTATIVES = BASE_KEY + "traffic.nearDup.representatives";
+    private static final String KEY_HTTP_THROTTLE_BYTES_PER_SECOND = BASE_KEY + "http.throttle.bytesPerSecond";
+    private static final String KEY_HTTP_THROTTLE_REQUESTS_PER_SECOND = BASE_KEY + "http.throttle.requestsPerSecond";
+    private static final String KEY_SERVERS_REPLICATE = BASE_KEY + "servers.replicate";
+
+    static final int MAX_INDEX_QUEUE_CAPACITY = 1_000_000;
 
     private boolean onlyInScope = true;
     private String mcpServerUrl = "http://localhost:8000";
@@ -20,6 +70,55 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
     private int minRiskLevel = Alert.RISK_INFO;
     private boolean initiatorsAll = true;
     private String initiatorsSelectedCsv = ""; // persisted as CSV
+    private String initiatorLimitsCsv = "";
+    private boolean indexBatchEnabled = true;
+    private int indexBatchMaxEntries = 100;
+    private int indexBatchMaxBytes = 1024 * 1024;
+    private int indexBatchLingerMillis = 1000;
+    private int connectTimeoutMillis = 5000;
+    private int requestTimeoutMillis = 30000;
+    private int maxInFlightRequests = 8;
+    private boolean http2Enabled = false;
+    private int requestBodyMaxBytes = 1024 * 1024;
+    private int responseBodyMaxBytes = 1024 * 1024;
+    private BodyLimitPolicy bodyLimitPolicy = BodyLimitPolicy.TRUNCATE;
+    private Compression compression = Compression.NONE;
+    private int compressionMinBytes = 1024;
+    private int compressionLevel = 6;
+    private int alertDedupTtlMinutes = 24 * 60;
+    private int alertDedupMaxEntries = 100_000;
+    private int findingsFlushMaxDelayMillis = 10_000;
+    private int findingsFlushHighRiskDelayMillis = 1000;
+    private int findingsFlushBatchSize = 50;
+    private int findingsFlushMinIntervalMillis = 1000;
+    private boolean spoolEnabled = true;
+    private int spoolMaxMegabytes = 256;
+    private int retryMaxAttempts = 3;
+    private int retryInitialBackoffMillis = 200;
+    private int retryMaxBackoffMillis = 5000;
+    private int breakerFailureThreshold = 5;
+    private int breakerOpenMillis = 30_000;
+    private int indexQueueCapacity = 10_000;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.SPILL_TO_DISK;
+    private int indexQueueBlockTimeoutMillis = 100;
+    private boolean findingsBatchEnabled = true;
+    private int findingsBatchMaxEntries = 200;
+    private int findingsBatchMaxBytes = 1024 * 1024;
+    private int indexSenders = 4;
+    private boolean virtualThreads = false;
+    private boolean trafficDedupEnabled = true;
+    private int trafficDedupWindowSeconds = 600;
+    private int trafficDedupMaxEntries = 50_000;
+    private boolean nearDupEnabled = true;
+    private int nearDupMaxDistance = 3;
+    private int nearDupRepresentatives = 3;
+    private int throttleBytesPerSecond = 0;
+    private int throttleRequestsPerSecond = 0;
+    private boolean serversReplicate = false;
+    /**
+     * Built from the fields above on first use and rebuilt when one of them changes.
+     */
+    private volatile CaptureConfig captureConfig;
 
     @Override
     protected void parse() {
@@ -29,6 +128,52 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
         minRiskLevel = getConfig().getInt(KEY_MIN_RISK, minRiskLevel);
         initiatorsAll = getConfig().getBoolean(KEY_INITIATORS_ALL, initiatorsAll);
         initiatorsSelectedCsv = getConfig().getString(KEY_INITIATORS_SELECTED, initiatorsSelectedCsv);
+        initiatorLimitsCsv = getConfig().getString(KEY_INITIATORS_LIMITS, initiatorLimitsCsv);
+        indexBatchEnabled = getConfig().getBoolean(KEY_INDEX_BATCH_ENABLED, indexBatchEnabled);
+        indexBatchMaxEntries = getConfig().getInt(KEY_INDEX_BATCH_MAX_ENTRIES, indexBatchMaxEntries);
+        indexBatchMaxBytes = getConfig().getInt(KEY_INDEX_BATCH_MAX_BYTES, indexBatchMaxBytes);
+        indexBatchLingerMillis = getConfig().getInt(KEY_INDEX_BATCH_LINGER_MS, indexBatchLingerMillis);
+        connectTimeoutMillis = getConfig().getInt(KEY_HTTP_CONNECT_TIMEOUT_MS, connectTimeoutMillis);
+        requestTimeoutMillis = getConfig().getInt(KEY_HTTP_REQUEST_TIMEOUT_MS, requestTimeoutMillis);
+        maxInFlightRequests = getConfig().getInt(KEY_HTTP_MAX_IN_FLIGHT, maxInFlightRequests);
+        http2Enabled = getConfig().getBoolean(KEY_HTTP_HTTP2, http2Enabled);
+        requestBodyMaxBytes = getConfig().getInt(KEY_BODY_REQUEST_MAX_BYTES, requestBodyMaxBytes);
+        responseBodyMaxBytes = getConfig().getInt(KEY_BODY_RESPONSE_MAX_BYTES, responseBodyMaxBytes);
+        bodyLimitPolicy = BodyLimitPolicy.parse(getConfig().getString(KEY_BODY_LIMIT_POLICY, null), bodyLimitPolicy);
+        compression = Compression.parse(getConfig().getString(KEY_COMPRESSION, null), compression);
+        compressionMinBytes = getConfig().getInt(KEY_COMPRESSION_MIN_BYTES, compressionMinBytes);
+        compressionLevel = clampCompressionLevel(getConfig().getInt(KEY_COMPRESSION_LEVEL, compressionLevel));
+        alertDedupTtlMinutes = getConfig().getInt(KEY_ALERT_DEDUP_TTL_MINUTES, alertDedupTtlMinutes);
+        alertDedupMaxEntries = getConfig().getInt(KEY_ALERT_DEDUP_MAX_ENTRIES, alertDedupMaxEntries);
+        findingsFlushMaxDelayMillis = getConfig().getInt(KEY_FINDINGS_FLUSH_MAX_DELAY_MS, findingsFlushMaxDelayMillis);
+        findingsFlushHighRiskDelayMillis = getConfig().getInt(KEY_FINDINGS_FLUSH_HIGH_RISK_DELAY_MS, findingsFlushHighRiskDelayMillis);
+        findingsFlushBatchSize = getConfig().getInt(KEY_FINDINGS_FLUSH_BATCH_SIZE, findingsFlushBatchSize);
+        findingsFlushMinIntervalMillis = getConfig().getInt(KEY_FINDINGS_FLUSH_MIN_INTERVAL_MS, findingsFlushMinIntervalMillis);
+        spoolEnabled = getConfig().getBoolean(KEY_SPOOL_ENABLED, spoolEnabled);
+        spoolMaxMegabytes = getConfig().getInt(KEY_SPOOL_MAX_MB, spoolMaxMegabytes);
+        retryMaxAttempts = getConfig().getInt(KEY_RETRY_MAX_ATTEMPTS, retryMaxAttempts);
+        retryInitialBackoffMillis = getConfig().getInt(KEY_RETRY_INITIAL_BACKOFF_MS, retryInitialBackoffMillis);
+        retryMaxBackoffMillis = getConfig().getInt(KEY_RETRY_MAX_BACKOFF_MS, retryMaxBackoffMillis);
+        breakerFailureThreshold = getConfig().getInt(KEY_BREAKER_FAILURE_THRESHOLD, breakerFailureThreshold);
+        breakerOpenMillis = getConfig().getInt(KEY_BREAKER_OPEN_MS, breakerOpenMillis);
+        indexQueueCapacity = clampIndexQueueCapacity(getConfig().getInt(KEY_INDEX_QUEUE_CAPACITY, indexQueueCapacity));
+        backpressurePolicy = BackpressurePolicy.parse(getConfig().getString(KEY_INDEX_QUEUE_POLICY, null), backpressurePolicy);
+        indexQueueBlockTimeoutMillis = getConfig().getInt(KEY_INDEX_QUEUE_BLOCK_TIMEOUT_MS, indexQueueBlockTimeoutMillis);
+        findingsBatchEnabled = getConfig().getBoolean(KEY_FINDINGS_BATCH_ENABLED, findingsBatchEnabled);
+        findingsBatchMaxEntries = getConfig().getInt(KEY_FINDINGS_BATCH_MAX_ENTRIES, findingsBatchMaxEntries);
+        findingsBatchMaxBytes = getConfig().getInt(KEY_FINDINGS_BATCH_MAX_BYTES, findingsBatchMaxBytes);
+        indexSenders = getConfig().getInt(KEY_INDEX_SENDERS, indexSenders);
+        virtualThreads = getConfig().getBoolean(KEY_HTTP_VIRTUAL_THREADS, virtualThreads);
+        trafficDedupEnabled = getConfig().getBoolean(KEY_TRAFFIC_DEDUP_ENABLED, trafficDedupEnabled);
+        trafficDedupWindowSeconds = getConfig().getInt(KEY_TRAFFIC_DEDUP_WINDOW_SECONDS, trafficDedupWindowSeconds);
+        trafficDedupMaxEntries = getConfig().getInt(KEY_TRAFFIC_DEDUP_MAX_ENTRIES, trafficDedupMaxEntries);
+        nearDupEnabled = getConfig().getBoolean(KEY_NEAR_DUP_ENABLED, nearDupEnabled);
+        nearDupMaxDistance = getConfig().getInt(KEY_NEAR_DUP_MAX_DISTANCE, nearDupMaxDistance);
+        nearDupRepresentatives = getConfig().getInt(KEY_NEAR_DUP_REPRESENTATIVES, nearDupRepresentatives);
+        throttleBytesPerSecond = getConfig().getInt(KEY_HTTP_THROTTLE_BYTES_PER_SECOND, throttleBytesPerSecond);
+        throttleRequestsPerSecond = getConfig().getInt(KEY_HTTP_THROTTLE_REQUESTS_PER_SECOND, throttleRequestsPerSecond);
+        serversReplicate = getConfig().getBoolean(KEY_SERVERS_REPLICATE, serversReplicate);
+        publishCaptureConfig();
     }
 
     public boolean isOnlyInScope() {
@@ -38,12 +183,32 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
     public void setOnlyInScope(boolean v) {
         onlyInScope = v;
         getConfig().setProperty(KEY_ONLY_IN_SCOPE, v);
+        publishCaptureConfig();
     }
 
+    /**
+     * The base URL of the server, or several separated by commas to spread traffic over them by target host.
+     */
     public String getMcpServerUrl() {
         return mcpServerUrl;
     }
 
+    /**
+     * @return the base URLs in {@link #getMcpServerUrl()}
+     */
+    public List<String> getMcpServerUrls() {
+        List<String> urls = new ArrayList<>();
+        String value = getMcpServerUrl();
+        if (value != null) {
+            for (String url : value.split("[,\\s]+")) {
+                if (!url.isEmpty() && !urls.contains(url)) {
+                    urls.add(url);
+                }
+            }
+        }
+        return urls;
+    }
+
     public void setMcpServerUrl(String v) {
         mcpServerUrl = v;
         getConfig().setProperty(KEY_SERVER_URL, v);
@@ -74,6 +239,7 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
     public void setInitiatorsAll(boolean v) {
         initiatorsAll = v;
         getConfig().setProperty(KEY_INITIATORS_ALL, v);
+        publishCaptureConfig();
     }
 
     /**
@@ -89,21 +255,580 @@ public class ShyHurricaneOptionsParam extends AbstractParam {
     public void setInitiatorsSelectedCsv(String csv) {
         initiatorsSelectedCsv = csv != null ? csv : "";
         getConfig().setProperty(KEY_INITIATORS_SELECTED, initiatorsSelectedCsv);
+        publishCaptureConfig();
+    }
+
+    /**
+     * Returns the sampling ratio and rate limit of each initiator, see {@link InitiatorLimits} (persisted format).
+     */
+    public String getInitiatorLimitsCsv() {
+        return initiatorLimitsCsv;
+    }
+
+    public void setInitiatorLimitsCsv(String csv) {
+        initiatorLimitsCsv = csv != null ? csv : "";
+        getConfig().setProperty(KEY_INITIATORS_LIMITS, initiatorLimitsCsv);
+        publishCaptureConfig();
     }
 
     /**
      * Utility: check if a given initiator id is in the selected list.
      */
     public boolean isInitiatorSelected(int initiator) {
-        if (initiatorsAll) return true;
-        for (String s : initiatorsSelectedCsv.split(",")) {
-            if (s.isEmpty()) continue;
-            try {
-                if (Integer.parseInt(s.trim()) == initiator) return true;
-            } catch (NumberFormatException ignored) {
-                // ignore bad entries
-            }
+        return getCaptureConfig().isInitiatorSelected(initiator);
+    }
+
+    /**
+     * The options read for every message, as an immutable snapshot.
+     */
+    CaptureConfig getCaptureConfig() {
+        CaptureConfig config = captureConfig;
+        if (config == null) {
+            config = CaptureConfig.of(this);
+            captureConfig = config;
         }
-        return false;
+        return config;
+    }
+
+    private void publishCaptureConfig() {
+        captureConfig = CaptureConfig.of(this);
+    }
+
+    /**
+     * Whether traffic is sent to the index endpoint in NDJSON batches instead of one request per entry.
+     */
+    public boolean isIndexBatchEnabled() {
+        return indexBatchEnabled;
+    }
+
+    public void setIndexBatchEnabled(boolean v) {
+        indexBatchEnabled = v;
+        getConfig().setProperty(KEY_INDEX_BATCH_ENABLED, v);
+    }
+
+    public int getIndexBatchMaxEntries() {
+        return indexBatchMaxEntries;
+    }
+
+    public void setIndexBatchMaxEntries(int v) {
+        indexBatchMaxEntries = v;
+        getConfig().setProperty(KEY_INDEX_BATCH_MAX_ENTRIES, v);
+    }
+
+    public int getIndexBatchMaxBytes() {
+        return indexBatchMaxBytes;
+    }
+
+    public void setIndexBatchMaxBytes(int v) {
+        indexBatchMaxBytes = v;
+        getConfig().setProperty(KEY_INDEX_BATCH_MAX_BYTES, v);
+    }
+
+    /**
+     * Maximum time the first entry of a batch waits for more entries before the batch is sent.
+     */
+    public int getIndexBatchLingerMillis() {
+        return indexBatchLingerMillis;
+    }
+
+    public void setIndexBatchLingerMillis(int v) {
+        indexBatchLingerMillis = v;
+        getConfig().setProperty(KEY_INDEX_BATCH_LINGER_MS, v);
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int v) {
+        connectTimeoutMillis = v;
+        getConfig().setProperty(KEY_HTTP_CONNECT_TIMEOUT_MS, v);
+    }
+
+    /**
+     * Time allowed for the server to respond to a single POST.
+     */
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public void setRequestTimeoutMillis(int v) {
+        requestTimeoutMillis = v;
+        getConfig().setProperty(KEY_HTTP_REQUEST_TIMEOUT_MS, v);
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int v) {
+        maxInFlightRequests = v;
+        getConfig().setProperty(KEY_HTTP_MAX_IN_FLIGHT, v);
+    }
+
+    /**
+     * Use HTTP/2, which is h2c (cleartext upgrade) for http:// server URLs.
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean v) {
+        http2Enabled = v;
+        getConfig().setProperty(KEY_HTTP_HTTP2, v);
+    }
+
+    /**
+     * Maximum request body size forwarded as-is, 0 for no limit.
+     */
+    public int getRequestBodyMaxBytes() {
+        return requestBodyMaxBytes;
+    }
+
+    public void setRequestBodyMaxBytes(int v) {
+        requestBodyMaxBytes = v;
+        getConfig().setProperty(KEY_BODY_REQUEST_MAX_BYTES, v);
+        publishCaptureConfig();
+    }
+
+    /**
+     * Maximum response body size forwarded as-is, 0 for no limit.
+     */
+    public int getResponseBodyMaxBytes() {
+        return responseBodyMaxBytes;
+    }
+
+    public void setResponseBodyMaxBytes(int v) {
+        responseBodyMaxBytes = v;
+        getConfig().setProperty(KEY_BODY_RESPONSE_MAX_BYTES, v);
+        publishCaptureConfig();
+    }
+
+    /**
+     * How bodies over the maximum size are forwarded.
+     */
+    public BodyLimitPolicy getBodyLimitPolicy() {
+        return bodyLimitPolicy;
+    }
+
+    public void setBodyLimitPolicy(BodyLimitPolicy v) {
+        bodyLimitPolicy = v != null ? v : BodyLimitPolicy.TRUNCATE;
+        getConfig().setProperty(KEY_BODY_LIMIT_POLICY, bodyLimitPolicy.name());
+        publishCaptureConfig();
+    }
+
+    /**
+     * Content-Encoding for bodies posted to the server.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression v) {
+        compression = v != null ? v : Compression.NONE;
+        getConfig().setProperty(KEY_COMPRESSION, compression.name());
+    }
+
+    /**
+     * Bodies smaller than this are sent uncompressed.
+     */
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public void setCompressionMinBytes(int v) {
+        compressionMinBytes = v;
+        getConfig().setProperty(KEY_COMPRESSION_MIN_BYTES, v);
+    }
+
+    /**
+     * Deflate level, 1 (fastest) to 9 (smallest).
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Levels outside 1 to 9 are moved into the range, {@link java.util.zip.Deflater} rejects them.
+     */
+    public void setCompressionLevel(int v) {
+        compressionLevel = clampCompressionLevel(v);
+        getConfig().setProperty(KEY_COMPRESSION_LEVEL, compressionLevel);
+    }
+
+    private static int clampCompressionLevel(int v) {
+        return Math.max(1, Math.min(9, v));
+    }
+
+    /**
+     * Time after which an alert with the same fingerprint is forwarded again, 0 to never forward it again.
+     */
+    public int getAlertDedupTtlMinutes() {
+        return alertDedupTtlMinutes;
+    }
+
+    public void setAlertDedupTtlMinutes(int v) {
+        alertDedupTtlMinutes = v;
+        getConfig().setProperty(KEY_ALERT_DEDUP_TTL_MINUTES, v);
+    }
+
+    /**
+     * Maximum number of remembered alert fingerprints, the oldest are forgotten first.
+     */
+    public int getAlertDedupMaxEntries() {
+        return alertDedupMaxEntries;
+    }
+
+    public void setAlertDedupMaxEntries(int v) {
+        alertDedupMaxEntries = v;
+        getConfig().setProperty(KEY_ALERT_DEDUP_MAX_ENTRIES, v);
+    }
+
+    /**
+     * Longest time a queued alert waits before the findings are posted.
+     */
+    public int getFindingsFlushMaxDelayMillis() {
+        return findingsFlushMaxDelayMillis;
+    }
+
+    public void setFindingsFlushMaxDelayMillis(int v) {
+        findingsFlushMaxDelayMillis = v;
+        getConfig().setProperty(KEY_FINDINGS_FLUSH_MAX_DELAY_MS, v);
+    }
+
+    /**
+     * Longest time a queued high risk alert waits before the findings are posted.
+     */
+    public int getFindingsFlushHighRiskDelayMillis() {
+        return findingsFlushHighRiskDelayMillis;
+    }
+
+    public void setFindingsFlushHighRiskDelayMillis(int v) {
+        findingsFlushHighRiskDelayMillis = v;
+        getConfig().setProperty(KEY_FINDINGS_FLUSH_HIGH_RISK_DELAY_MS, v);
+    }
+
+    /**
+     * Number of queued alerts that triggers posting the findings without waiting for the delay.
+     */
+    public int getFindingsFlushBatchSize() {
+        return findingsFlushBatchSize;
+    }
+
+    public void setFindingsFlushBatchSize(int v) {
+        findingsFlushBatchSize = v;
+        getConfig().setProperty(KEY_FINDINGS_FLUSH_BATCH_SIZE, v);
+    }
+
+    /**
+     * Minimum time between the start of two findings flushes.
+     */
+    public int getFindingsFlushMinIntervalMillis() {
+        return findingsFlushMinIntervalMillis;
+    }
+
+    public void setFindingsFlushMinIntervalMillis(int v) {
+        findingsFlushMinIntervalMillis = v;
+        getConfig().setProperty(KEY_FINDINGS_FLUSH_MIN_INTERVAL_MS, v);
+    }
+
+    /**
+     * Whether entries that can't be delivered are kept on disk and sent later.
+     */
+    public boolean isSpoolEnabled() {
+        return spoolEnabled;
+    }
+
+    public void setSpoolEnabled(boolean v) {
+        spoolEnabled = v;
+        getConfig().setProperty(KEY_SPOOL_ENABLED, v);
+    }
+
+    /**
+     * Maximum disk space used by the spool, the oldest entries are discarded first.
+     */
+    public int getSpoolMaxMegabytes() {
+        return spoolMaxMegabytes;
+    }
+
+    public void setSpoolMaxMegabytes(int v) {
+        spoolMaxMegabytes = v;
+        getConfig().setProperty(KEY_SPOOL_MAX_MB, v);
+    }
+
+    /**
+     * Attempts per request before an entry is spooled, including the first.
+     */
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int v) {
+        retryMaxAttempts = v;
+        getConfig().setProperty(KEY_RETRY_MAX_ATTEMPTS, v);
+    }
+
+    /**
+     * Delay before the first retry, doubled for each following retry and jittered.
+     */
+    public int getRetryInitialBackoffMillis() {
+        return retryInitialBackoffMillis;
+    }
+
+    public void setRetryInitialBackoffMillis(int v) {
+        retryInitialBackoffMillis = v;
+        getConfig().setProperty(KEY_RETRY_INITIAL_BACKOFF_MS, v);
+    }
+
+    /**
+     * Longest delay between retries.
+     */
+    public int getRetryMaxBackoffMillis() {
+        return retryMaxBackoffMillis;
+    }
+
+    public void setRetryMaxBackoffMillis(int v) {
+        retryMaxBackoffMillis = v;
+        getConfig().setProperty(KEY_RETRY_MAX_BACKOFF_MS, v);
+    }
+
+    /**
+     * Consecutive failed attempts that open an endpoint's circuit breaker.
+     */
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public void setBreakerFailureThreshold(int v) {
+        breakerFailureThreshold = v;
+        getConfig().setProperty(KEY_BREAKER_FAILURE_THRESHOLD, v);
+    }
+
+    /**
+     * Time an open circuit breaker waits before letting a probe request through.
+     */
+    public int getBreakerOpenMillis() {
+        return breakerOpenMillis;
+    }
+
+    public void setBreakerOpenMillis(int v) {
+        breakerOpenMillis = v;
+        getConfig().setProperty(KEY_BREAKER_OPEN_MS, v);
+    }
+
+    /**
+     * Maximum number of captured messages waiting to be sent to the index endpoint.
+     */
+    public int getIndexQueueCapacity() {
+        return indexQueueCapacity;
+    }
+
+    /**
+     * Capacities outside 1 to {@link #MAX_INDEX_QUEUE_CAPACITY} are moved into the range the options panel accepts.
+     */
+    public void setIndexQueueCapacity(int v) {
+        indexQueueCapacity = clampIndexQueueCapacity(v);
+        getConfig().setProperty(KEY_INDEX_QUEUE_CAPACITY, indexQueueCapacity);
+        publishCaptureConfig();
+    }
+
+    static int clampIndexQueueCapacity(int v) {
+        return Math.max(1, Math.min(MAX_INDEX_QUEUE_CAPACITY, v));
+    }
+
+    /**
+     * What happens to captured messages when the index queue is full.
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public void setBackpressurePolicy(BackpressurePolicy v) {
+        backpressurePolicy = v != null ? v : BackpressurePolicy.SPILL_TO_DISK;
+        getConfig().setProperty(KEY_INDEX_QUEUE_POLICY, backpressurePolicy.name());
+        publishCaptureConfig();
+    }
+
+    /**
+     * Longest time ZAP waits for space in the index queue with the BLOCK policy.
+     */
+    public int getIndexQueueBlockTimeoutMillis() {
+        return indexQueueBlockTimeoutMillis;
+    }
+
+    public void setIndexQueueBlockTimeoutMillis(int v) {
+        indexQueueBlockTimeoutMillis = v;
+        getConfig().setProperty(KEY_INDEX_QUEUE_BLOCK_TIMEOUT_MS, v);
+    }
+
+    /**
+     * Whether findings are posted to {@code /findings} as NDJSON batches.
+     */
+    public boolean isFindingsBatchEnabled() {
+        return findingsBatchEnabled;
+    }
+
+    public void setFindingsBatchEnabled(boolean v) {
+        findingsBatchEnabled = v;
+        getConfig().setProperty(KEY_FINDINGS_BATCH_ENABLED, v);
+    }
+
+    /**
+     * Maximum findings in one batch.
+     */
+    public int getFindingsBatchMaxEntries() {
+        return findingsBatchMaxEntries;
+    }
+
+    public void setFindingsBatchMaxEntries(int v) {
+        findingsBatchMaxEntries = v;
+        getConfig().setProperty(KEY_FINDINGS_BATCH_MAX_ENTRIES, v);
+    }
+
+    /**
+     * Maximum size of a findings batch body in bytes.
+     */
+    public int getFindingsBatchMaxBytes() {
+        return findingsBatchMaxBytes;
+    }
+
+    public void setFindingsBatchMaxBytes(int v) {
+        findingsBatchMaxBytes = v;
+        getConfig().setProperty(KEY_FINDINGS_BATCH_MAX_BYTES, v);
+    }
+
+    /**
+     * Number of threads sending traffic to {@code /index}. The traffic for a host is always sent by the same thread, in
+     * capture order. Read when the forwarder starts.
+     */
+    public int getIndexSenders() {
+        return indexSenders;
+    }
+
+    public void setIndexSenders(int v) {
+        indexSenders = v;
+        getConfig().setProperty(KEY_INDEX_SENDERS, v);
+    }
+
+    /**
+     * Whether posts are sent from virtual threads when the JVM supports them (JDK 21+). Ignored on older JVMs.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean v) {
+        virtualThreads = v;
+        getConfig().setProperty(KEY_HTTP_VIRTUAL_THREADS, v);
+    }
+
+    /**
+     * Whether exact repeats of a response (same method, URL, status and body) are skipped within the window.
+     */
+    public boolean isTrafficDedupEnabled() {
+        return trafficDedupEnabled;
+    }
+
+    public void setTrafficDedupEnabled(boolean v) {
+        trafficDedupEnabled = v;
+        getConfig().setProperty(KEY_TRAFFIC_DEDUP_ENABLED, v);
+        publishCaptureConfig();
+    }
+
+    /**
+     * How long a forwarded response suppresses its exact repeats, in seconds. 0 or less suppresses them until evicted.
+     */
+    public int getTrafficDedupWindowSeconds() {
+        return trafficDedupWindowSeconds;
+    }
+
+    public void setTrafficDedupWindowSeconds(int v) {
+        trafficDedupWindowSeconds = v;
+        getConfig().setProperty(KEY_TRAFFIC_DEDUP_WINDOW_SECONDS, v);
+    }
+
+    /**
+     * Maximum number of response hashes remembered for duplicate suppression, the oldest are evicted first.
+     */
+    public int getTrafficDedupMaxEntries() {
+        return trafficDedupMaxEntries;
+    }
+
+    public void setTrafficDedupMaxEntries(int v) {
+        trafficDedupMaxEntries = v;
+        getConfig().setProperty(KEY_TRAFFIC_DEDUP_MAX_ENTRIES, v);
+    }
+
+    /**
+     * Whether active scanner responses that are near duplicates of already forwarded ones are skipped.
+     */
+    public boolean isNearDupEnabled() {
+        return nearDupEnabled;
+    }
+
+    public void setNearDupEnabled(boolean v) {
+        nearDupEnabled = v;
+        getConfig().setProperty(KEY_NEAR_DUP_ENABLED, v);
+        publishCaptureConfig();
+    }
+
+    /**
+     * Maximum number of differing bits between the SimHashes of two responses that are near duplicates, out of 64.
+     */
+    public int getNearDupMaxDistance() {
+        return nearDupMaxDistance;
+    }
+
+    public void setNearDupMaxDistance(int v) {
+        nearDupMaxDistance = v;
+        getConfig().setProperty(KEY_NEAR_DUP_MAX_DISTANCE, v);
+    }
+
+    /**
+     * Number of responses of each cluster of near duplicates that are forwarded.
+     */
+    public int getNearDupRepresentatives() {
+        return nearDupRepresentatives;
+    }
+
+    public void setNearDupRepresentatives(int v) {
+        nearDupRepresentatives = v;
+        getConfig().setProperty(KEY_NEAR_DUP_REPRESENTATIVES, v);
+    }
+
+    /**
+     * Maximum bytes per second posted to the server, over all senders. 0 for no limit.
+     */
+    public int getThrottleBytesPerSecond() {
+        return throttleBytesPerSecond;
+    }
+
+    public void setThrottleBytesPerSecond(int v) {
+        throttleBytesPerSecond = v;
+        getConfig().setProperty(KEY_HTTP_THROTTLE_BYTES_PER_SECOND, v);
+    }
+
+    /**
+     * Maximum requests per second to the server, over all senders. 0 for no limit.
+     */
+    public int getThrottleRequestsPerSecond() {
+        return throttleRequestsPerSecond;
+    }
+
+    public void setThrottleRequestsPerSecond(int v) {
+        throttleRequestsPerSecond = v;
+        getConfig().setProperty(KEY_HTTP_THROTTLE_REQUESTS_PER_SECOND, v);
+    }
+
+    /**
+     * With several server URLs, whether traffic and findings are also posted to the next shard on the ring.
+     */
+    public boolean isServersReplicate() {
+        return serversReplicate;
+    }
+
+    public void setServersReplicate(boolean v) {
+        serversReplicate = v;
+        getConfig().setProperty(KEY_SERVERS_REPLICATE, v);
     }
 }
@@ -0,0 +1,75 @@
+package com.github.double16;
+
+/**
+ * A token bucket: tokens are added at a fixed rate up to the burst size, and each unit of work takes tokens. A full
+ * bucket lets a burst through at once, after that work is spread at the rate. Times are passed in so that tests don't
+ * depend on the clock.
+ */
+class TokenBucket {
+
+    private final double ratePerSecond;
+    private final double burst;
+    private double tokens;
+    private long lastNanos;
+
+    /**
+     * @param ratePerSecond tokens added per second
+     * @param burst         the most tokens the bucket holds, it starts full
+     */
+    TokenBucket(double ratePerSecond, double burst, long nowNanos) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastNanos = nowNanos;
+    }
+
+    /**
+     * Takes the tokens if the bucket has enough.
+     *
+     * @return false if it hasn't, nothing is taken
+     */
+    synchronized boolean tryAcquire(double permits, long nowNanos) {
+        refill(nowNanos);
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Takes the tokens even if the bucket hasn't enough, going into debt that later callers wait for too. Lets work
+     * larger than the burst through and keeps callers in order.
+     *
+     * @return how long the caller should wait before doing the work, 0 if it can start now
+     */
+    synchronized long reserve(double permits, long nowNanos) {
+        refill(nowNanos);
+        tokens -= permits;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens * 1_000_000_000d / ratePerSecond);
+    }
+
+    /**
+     * @return the share of the burst in use, 0 when the bucket is full, 1 when empty, more than 1 while callers wait
+     * for tokens
+     */
+    synchronized double utilization(long nowNanos) {
+        refill(nowNanos);
+        return Math.max(0, (burst - tokens) / burst);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * ratePerSecond / 1_000_000_000d);
+            lastNanos = nowNanos;
+        }
+    }
+
+    double getRatePerSecond() {
+        return ratePerSecond;
+    }
+}
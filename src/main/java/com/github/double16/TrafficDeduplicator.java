@@ -0,0 +1,102 @@
+package com.github.double16;
+
+import org.parosproxy.paros.network.HttpBody;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+
+/**
+ * Skips exact repeats of forwarded traffic, e.g. the spider and repeated browsing fetching the same page again. A
+ * response is a repeat if its method, normalized URL, status and body hash to the same 64-bit value as a response
+ * forwarded within the window. The hashes are kept in a bounded {@link FingerprintStore}, striped so that concurrent
+ * proxy threads rarely contend.
+ * <p>
+ * The hash is only recorded by {@link #forwarded} once the message is queued, so a message dropped by the queue's
+ * backpressure doesn't suppress its repeats. Identical messages checked at the same time may all be forwarded.
+ */
+class TrafficDeduplicator {
+
+    private static final int STRIPES = 16;
+
+    private final ShyHurricaneOptionsParam param;
+    private final ForwarderMetrics metrics;
+    private final FingerprintStore hashes;
+
+    TrafficDeduplicator(ShyHurricaneOptionsParam param, ForwarderMetrics metrics) {
+        this.param = param;
+        this.metrics = metrics;
+        this.hashes = new FingerprintStore(() -> param.getTrafficDedupWindowSeconds() * 1000L,
+                param::getTrafficDedupMaxEntries, STRIPES);
+    }
+
+    /**
+     * @return the key of the message for {@link #isRepeat} and {@link #forwarded}, or 0 if de-duplication is disabled
+     */
+    long key(HttpMessage msg) {
+        if (!param.getCaptureConfig().isTrafficDedupEnabled()) {
+            return 0;
+        }
+        long hash = hash(msg);
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * @return true if the message repeats one forwarded within the window and should be skipped
+     */
+    boolean isRepeat(HttpMessage msg, long key, long nowMillis) {
+        if (key == 0 || !hashes.contains(key, nowMillis)) {
+            return false;
+        }
+        metrics.increment(ForwarderMetrics.Counter.SKIPPED_DUPLICATE);
+        metrics.add(ForwarderMetrics.Counter.SKIPPED_DUPLICATE_BYTES, msg.getResponseBody().length());
+        return true;
+    }
+
+    /**
+     * Records that the message with the key was queued, so its repeats are skipped until the window ends.
+     */
+    void forwarded(long key, long nowMillis) {
+        if (key != 0) {
+            hashes.add(key, nowMillis);
+        }
+    }
+
+    /**
+     * Hashes the method, the URL with a lower case scheme and host, the status and the whole response body. Each field
+     * is followed by a separator so that moving bytes from one field to the next changes the hash.
+     */
+    static long hash(HttpMessage msg) {
+        HttpRequestHeader req = msg.getRequestHeader();
+        long h = Hashing.start();
+        h = Hashing.update(h, req.getMethod());
+        h = Hashing.update(h, -1);
+        String endpoint = ScopeCache.key(req);
+        h = Hashing.update(h, endpoint != null ? endpoint : req.getURI().toString());
+        h = Hashing.update(h, -1);
+        if (endpoint != null) {
+            String query = req.getURI().getEscapedQuery();
+            if (query != null) {
+                h = Hashing.update(h, query);
+            }
+            h = Hashing.update(h, -1);
+        }
+        h = Hashing.update(h, msg.getResponseHeader().getStatusCode());
+        HttpBody body = msg.getResponseBody();
+        h = Hashing.update(h, body.getBytes(), 0, body.length());
+        return Hashing.mix(h);
+    }
+
+    /**
+     * Removes hashes older than the window.
+     */
+    int expire(long nowMillis) {
+        return hashes.expire(nowMillis);
+    }
+
+    int size() {
+        return hashes.size();
+    }
+
+    void clear() {
+        hashes.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.double16;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.parosproxy.paros.network.HttpBody;
+import org.parosproxy.paros.network.HttpHeader;
+import org.parosproxy.paros.network.HttpHeaderField;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.parosproxy.paros.network.HttpResponseHeader;
+
+/**
+ * Immutable copy of the parts of an {@link HttpMessage} that are sent to the index endpoint. Captured on ZAP's
+ * sender thread and serialized later by the sender thread with {@link TrafficEntryWriter}.
+ *
+ * @param requestBody  null if the body couldn't be decoded
+ * @param responseBody null if the body couldn't be decoded
+ */
+record TrafficEntry(
+        long timestampMillis,
+        String method,
+        String endpoint,
+        List<HttpHeaderField> requestHeaders,
+        Body requestBody,
+        int statusCode,
+        List<HttpHeaderField> responseHeaders,
+        Body responseBody,
+        int rttMillis) {
+
+    static final String HEAD_TAIL_SEPARATOR = "\n...\n";
+
+    /**
+     * A captured body, possibly cut down by a {@link BodyLimitPolicy}.
+     *
+     * @param text           the body text, null if only a hash is forwarded
+     * @param originalLength length of the full body in bytes
+     * @param truncated      true if text is not the full body
+     * @param sha256         hex SHA-256 of the full body, set for {@link BodyLimitPolicy#HASH}. Hashed at capture so
+     *                       the queued entry doesn't hold on to the large body.
+     */
+    record Body(String text, int originalLength, boolean truncated, String sha256) {
+        static Body of(String text) {
+            return new Body(text, -1, false, null);
+        }
+    }
+
+    static TrafficEntry capture(HttpMessage msg, CaptureConfig config) {
+        HttpRequestHeader req_hdr = msg.getRequestHeader();
+        HttpResponseHeader res_hdr = msg.getResponseHeader();
+        BodyLimitPolicy policy = config.getBodyLimitPolicy();
+
+        return new TrafficEntry(
+                System.currentTimeMillis(),
+                req_hdr.getMethod(),
+                req_hdr.getURI().toString(),
+                req_hdr.getHeaders(),
+                captureBody(req_hdr, msg.getRequestBody(), config.getRequestBodyMaxBytes(), policy),
+                res_hdr.getStatusCode(),
+                res_hdr.getHeaders(),
+                captureBody(res_hdr, msg.getResponseBody(), config.getResponseBodyMaxBytes(), policy),
+                msg.getTimeElapsedMillis());
+    }
+
+    /**
+     * Bodies within the limit use {@link HttpBody#toString()}, which ZAP caches on the message. Larger bodies are
+     * never decoded in full, only the parts that are forwarded.
+     *
+     * @param maxBytes the limit, 0 or less for no limit
+     */
+    static Body captureBody(HttpHeader header, HttpBody body, int maxBytes, BodyLimitPolicy policy) {
+        try {
+            int length = body.length();
+            if (maxBytes <= 0 || length <= maxBytes) {
+                return Body.of(body.toString());
+            }
+            byte[] bytes = body.getBytes();
+            switch (policy) {
+                case HASH:
+                    return new Body(null, length, true, sha256(bytes));
+                case HEAD_TAIL: {
+                    Charset charset = charset(header);
+                    int head = maxBytes / 2;
+                    int tail = maxBytes - head;
+                    String text = new String(bytes, 0, head, charset)
+                            + HEAD_TAIL_SEPARATOR
+                            + new String(bytes, length - tail, tail, charset);
+                    return new Body(text, length, true, null);
+                }
+                case TRUNCATE:
+                default:
+                    return new Body(new String(bytes, 0, maxBytes, charset(header)), length, true, null);
+            }
+        } catch (Exception e) {
+            // bad unicode chars or binary data
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Charset charset(HttpHeader header) {
+        String contentType = header.getHeader(HttpHeader.CONTENT_TYPE);
+        if (contentType != null) {
+            int idx = contentType.toLowerCase().indexOf("charset=");
+            if (idx >= 0) {
+                String name = contentType.substring(idx + "charset=".length());
+                int end = name.indexOf(';');
+                if (end >= 0) {
+                    name = name.substring(0, end);
+                }
+                name = name.trim().replace("\"", "");
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    // unknown charset, use the default
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
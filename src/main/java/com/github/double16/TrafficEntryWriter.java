@@ -0,0 +1,108 @@
+package com.github.double16;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import org.parosproxy.paros.network.HttpHeaderField;
+
+/**
+ * Writes a {@link TrafficEntry} as an index document straight onto an output stream with a {@link JsonGenerator},
+ * without building an intermediate object tree or JSON string.
+ */
+final class TrafficEntryWriter {
+
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private TrafficEntryWriter() {
+    }
+
+    static void write(TrafficEntry entry, OutputStream out) throws IOException {
+        try (JsonGenerator gen = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("timestamp", DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(entry.timestampMillis())));
+
+            gen.writeObjectFieldStart("request");
+            gen.writeStringField("method", entry.method());
+            gen.writeStringField("endpoint", entry.endpoint());
+            writeKatanaHeaders(gen, entry.requestHeaders());
+            writeBody(gen, entry.requestBody());
+            gen.writeEndObject();
+
+            gen.writeObjectFieldStart("response");
+            gen.writeNumberField("status_code", entry.statusCode());
+            writeKatanaHeaders(gen, entry.responseHeaders());
+            writeBody(gen, entry.responseBody());
+            gen.writeNumberField("rtt", entry.rttMillis() / 1000.0);
+            gen.writeEndObject();
+
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the body text and, if a limit was applied, the {@code truncated} and {@code original_length} markers.
+     */
+    private static void writeBody(JsonGenerator gen, TrafficEntry.Body body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        if (body.text() != null) {
+            gen.writeStringField("body", body.text());
+        }
+        if (body.sha256() != null) {
+            gen.writeStringField("body_sha256", body.sha256());
+        }
+        if (body.truncated()) {
+            gen.writeBooleanField("truncated", true);
+            gen.writeNumberField("original_length", body.originalLength());
+        }
+    }
+
+    /**
+     * Katana headers are lowercase with underscores. Repeated headers are merged into one value separated by ';'.
+     * Header lists are short, so duplicates are found by scanning instead of building a map.
+     */
+    private static void writeKatanaHeaders(JsonGenerator gen, List<HttpHeaderField> headers) throws IOException {
+        gen.writeObjectFieldStart("headers");
+        int size = headers.size();
+        for (int i = 0; i < size; i++) {
+            String name = headers.get(i).getName();
+            if (seenBefore(headers, i, name)) {
+                continue;
+            }
+            gen.writeFieldName(name.toLowerCase(Locale.ROOT));
+            String value = headers.get(i).getValue();
+            StringBuilder merged = null;
+            for (int j = i + 1; j < size; j++) {
+                HttpHeaderField other = headers.get(j);
+                if (other.getName().equalsIgnoreCase(name)) {
+                    if (merged == null) {
+                        merged = new StringBuilder(value);
+                    }
+                    merged.append(';').append(other.getValue());
+                }
+            }
+            gen.writeString(merged != null ? merged.toString() : value);
+        }
+        gen.writeEndObject();
+    }
+
+    private static boolean seenBefore(List<HttpHeaderField> headers, int index, String name) {
+        for (int i = 0; i < index; i++) {
+            if (headers.get(i).getName().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
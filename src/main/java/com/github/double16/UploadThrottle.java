@@ -0,0 +1,109 @@
+package com.github.double16;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps the bytes and requests per second posted to the server over all senders, so forwarding doesn't saturate a
+ * shared uplink. Each limit is a {@link TokenBucket} with a burst of one second's worth. A sender reserves its request
+ * and body bytes before posting and sleeps off any debt, so bursts are smoothed to the configured rates and a body
+ * larger than the burst still goes through. A bucket is replaced when its configured rate changes.
+ */
+class UploadThrottle {
+
+    private final ShyHurricaneOptionsParam param;
+    private final ForwarderMetrics metrics;
+    private final LongSupplier clock;
+    private volatile TokenBucket bytes;
+    private volatile TokenBucket requests;
+
+    UploadThrottle(ShyHurricaneOptionsParam param, ForwarderMetrics metrics) {
+        this(param, metrics, System::nanoTime);
+    }
+
+    UploadThrottle(ShyHurricaneOptionsParam param, ForwarderMetrics metrics, LongSupplier clock) {
+        this.param = param;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    /**
+     * Waits until a request with a body of {@code length} bytes may be sent.
+     */
+    void acquire(int length) throws InterruptedException {
+        long waitNanos = reserve(length);
+        if (waitNanos > 0) {
+            metrics.increment(ForwarderMetrics.Counter.HTTP_THROTTLED);
+            metrics.record(ForwarderMetrics.Timer.THROTTLE_WAIT, waitNanos);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes the tokens for a request without waiting.
+     *
+     * @return how long the request must wait, 0 if it can be sent now
+     */
+    long reserve(int length) {
+        long now = clock.getAsLong();
+        long wait = 0;
+        TokenBucket requestBucket = bucket(false, param.getThrottleRequestsPerSecond(), now);
+        if (requestBucket != null) {
+            wait = requestBucket.reserve(1, now);
+        }
+        TokenBucket byteBucket = bucket(true, param.getThrottleBytesPerSecond(), now);
+        if (byteBucket != null) {
+            wait = Math.max(wait, byteBucket.reserve(length, now));
+        }
+        utilization(now);
+        return wait;
+    }
+
+    /**
+     * Also publishes the utilization as the {@link ForwarderMetrics.Gauge#THROTTLE_UTILIZATION} gauge, in percent.
+     *
+     * @return the larger share of the byte and request bursts in use, more than 1 while senders wait, 0 without
+     * limits
+     */
+    double utilization() {
+        return utilization(clock.getAsLong());
+    }
+
+    private double utilization(long now) {
+        double utilization = 0;
+        TokenBucket requestBucket = bucket(false, param.getThrottleRequestsPerSecond(), now);
+        if (requestBucket != null) {
+            utilization = requestBucket.utilization(now);
+        }
+        TokenBucket byteBucket = bucket(true, param.getThrottleBytesPerSecond(), now);
+        if (byteBucket != null) {
+            utilization = Math.max(utilization, byteBucket.utilization(now));
+        }
+        metrics.set(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION, Math.round(utilization * 100));
+        return utilization;
+    }
+
+    /**
+     * @return the bucket for the rate, null if the rate is unlimited
+     */
+    private TokenBucket bucket(boolean forBytes, int ratePerSecond, long now) {
+        if (ratePerSecond <= 0) {
+            return null;
+        }
+        TokenBucket bucket = forBytes ? bytes : requests;
+        if (bucket == null || bucket.getRatePerSecond() != ratePerSecond) {
+            synchronized (this) {
+                bucket = forBytes ? bytes : requests;
+                if (bucket == null || bucket.getRatePerSecond() != ratePerSecond) {
+                    bucket = new TokenBucket(ratePerSecond, ratePerSecond, now);
+                    if (forBytes) {
+                        bytes = bucket;
+                    } else {
+                        requests = bucket;
+                    }
+                }
+            }
+        }
+        return bucket;
+    }
+}
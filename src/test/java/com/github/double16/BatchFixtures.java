@@ -0,0 +1,108 @@
+package com.github.double16;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Shared by the tests of {@link IndexForwarder} and {@link FindingsBatcher}: the batching options, and sinks that
+ * record the posts as the server sees them.
+ */
+final class BatchFixtures {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Reads the request endpoint of traffic entries.
+     */
+    static final Parser INDEX = new Parser("/request/endpoint");
+    /**
+     * Reads the target of findings.
+     */
+    static final Parser FINDINGS = new Parser("/target");
+
+    private BatchFixtures() {
+    }
+
+    /**
+     * Batching options for both traffic and findings. Index batches don't linger, they are posted when full or when
+     * the forwarder closes.
+     */
+    static ShyHurricaneOptionsParam batching(boolean enabled, int maxEntries, int maxBytes) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public boolean isIndexBatchEnabled() { return enabled; }
+            @Override public int getIndexBatchMaxEntries() { return maxEntries; }
+            @Override public int getIndexBatchMaxBytes() { return maxBytes; }
+            @Override public int getIndexBatchLingerMillis() { return 60_000; }
+            @Override public boolean isFindingsBatchEnabled() { return enabled; }
+            @Override public int getFindingsBatchMaxEntries() { return maxEntries; }
+            @Override public int getFindingsBatchMaxBytes() { return maxBytes; }
+        };
+    }
+
+    static TrafficEntry entry(int id) {
+        return new TrafficEntry(0, "GET", "http://example.com/" + id, List.of(), null, 200, List.of(), null, 0);
+    }
+
+    /**
+     * A post as seen by the server, reduced to the content type and one field of each of its documents.
+     */
+    record Post(String contentType, List<String> documents) {
+        static Post of(String contentType, String... documents) {
+            return new Post(contentType, List.of(documents));
+        }
+
+        /**
+         * @return a post of the entries from {@link #entry(int)} with these ids
+         */
+        static Post of(String contentType, int... ids) {
+            List<String> endpoints = new ArrayList<>();
+            for (int id : ids) {
+                endpoints.add("http://example.com/" + id);
+            }
+            return new Post(contentType, endpoints);
+        }
+    }
+
+    static final class Parser {
+        private final String pointer;
+
+        private Parser(String pointer) {
+            this.pointer = pointer;
+        }
+
+        Post parse(String contentType, byte[] body, int offset, int length) {
+            String text = new String(body, offset, length, StandardCharsets.UTF_8);
+            if (IndexForwarder.NDJSON.equals(contentType)) {
+                assertTrue(text.endsWith("\n"));
+            } else {
+                assertFalse(text.contains("\n"));
+            }
+            List<String> documents = new ArrayList<>();
+            for (String line : text.split("\n")) {
+                try {
+                    documents.add(MAPPER.readTree(line).at(pointer).asText());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return new Post(contentType, documents);
+        }
+
+        /**
+         * @return a sink that adds each post to {@code posts} and answers with {@code status}
+         */
+        IndexForwarder.Sink recording(List<Post> posts, int status) {
+            return (contentType, body, offset, length) -> {
+                posts.add(parse(contentType, body, offset, length));
+                return status;
+            };
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BulkSupportTest {
+
+    @Test
+    void unsupportedStatus_marksTheServerWithoutRetryResults() {
+        BulkSupport bulk = new BulkSupport();
+        assertTrue(bulk.rejected("a", 415, false, 0));
+        assertFalse(bulk.isSupported("a", 0));
+        assertFalse(bulk.isSupportedEverywhere());
+    }
+
+    @Test
+    void badRequest_onlyCountsWhenTheDocumentsAreAcceptedAlone() {
+        BulkSupport bulk = new BulkSupport();
+        assertFalse(bulk.rejected("a", 400, false, 0));
+        assertTrue(bulk.isSupported("a", 0));
+        assertFalse(bulk.rejected("a", 422, false, 0));
+        assertTrue(bulk.isSupportedEverywhere());
+
+        assertTrue(bulk.rejected("a", 400, true, 0));
+        assertFalse(bulk.isSupported("a", 0));
+    }
+
+    @Test
+    void servers_areTrackedSeparately() {
+        BulkSupport bulk = new BulkSupport();
+        bulk.rejected("a", 404, false, 0);
+        assertFalse(bulk.isSupported("a", 0));
+        assertTrue(bulk.isSupported("b", 0));
+        assertTrue(bulk.isSupported(null, 0));
+
+        bulk.rejected(null, 404, false, 0);
+        assertFalse(bulk.isSupported(null, 0));
+    }
+
+    @Test
+    void unsupportedServer_isProbedAgainAfterTheInterval() {
+        BulkSupport bulk = new BulkSupport();
+        bulk.rejected("a", 501, false, 1000);
+        assertFalse(bulk.isSupported("a", 1000 + BulkSupport.REPROBE_MILLIS - 1));
+        assertTrue(bulk.isSupported("a", 1000 + BulkSupport.REPROBE_MILLIS));
+        assertTrue(bulk.isSupportedEverywhere());
+    }
+
+    @Test
+    void isRejected() {
+        for (int status : new int[]{400, 404, 405, 415, 422, 501}) {
+            assertTrue(BulkSupport.isRejected(status), String.valueOf(status));
+        }
+        for (int status : new int[]{200, 201, 401, 403, 429, 500, 503}) {
+            assertFalse(BulkSupport.isRejected(status), String.valueOf(status));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.junit.jupiter.api.Test;
+
+class CaptureConfigTest {
+
+    @Test
+    void parseInitiators_ignoresBadEntries() {
+        BitSet set = CaptureConfig.parseInitiators(" 1, 2,abc,,-4, 7 ,");
+        assertEquals(BitSet.valueOf(new long[]{(1L << 1) | (1L << 2) | (1L << 7)}), set);
+        assertTrue(CaptureConfig.parseInitiators("").isEmpty());
+        assertTrue(CaptureConfig.parseInitiators(null).isEmpty());
+    }
+
+    @Test
+    void initiatorSelection() {
+        CaptureConfig config = new ShyHurricaneOptionsParam() {
+            @Override public boolean isInitiatorsAll() { return false; }
+            @Override public String getInitiatorsSelectedCsv() { return "1,3"; }
+        }.getCaptureConfig();
+
+        assertTrue(config.isInitiatorSelected(1));
+        assertTrue(config.isInitiatorSelected(3));
+        assertFalse(config.isInitiatorSelected(2));
+        assertFalse(config.isInitiatorSelected(-1));
+        assertFalse(config.isInitiatorsAll());
+    }
+
+    @Test
+    void settersPublishNewSnapshot() {
+        ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam();
+        param.load(new XMLConfiguration());
+        CaptureConfig before = param.getCaptureConfig();
+        assertTrue(before.isInitiatorSelected(42));
+
+        param.setInitiatorsAll(false);
+        param.setInitiatorsSelectedCsv("42");
+        param.setResponseBodyMaxBytes(16);
+        param.setBodyLimitPolicy(BodyLimitPolicy.HASH);
+        param.setOnlyInScope(false);
+        param.setTrafficDedupEnabled(false);
+        param.setNearDupEnabled(false);
+        param.setIndexQueueCapacity(7);
+        param.setBackpressurePolicy(BackpressurePolicy.BLOCK);
+
+        CaptureConfig after = param.getCaptureConfig();
+        assertNotSame(before, after);
+        assertTrue(after.isInitiatorSelected(42));
+        assertFalse(after.isInitiatorSelected(41));
+        assertEquals(16, after.getResponseBodyMaxBytes());
+        assertEquals(BodyLimitPolicy.HASH, after.getBodyLimitPolicy());
+        assertFalse(after.isOnlyInScope());
+        assertFalse(after.isTrafficDedupEnabled());
+        assertFalse(after.isNearDupEnabled());
+        assertEquals(7, after.getIndexQueueCapacity());
+        assertEquals(BackpressurePolicy.BLOCK, after.getBackpressurePolicy());
+
+        // a published snapshot never changes
+        assertTrue(before.isInitiatorsAll());
+        assertTrue(before.isOnlyInScope());
+        assertSame(after, param.getCaptureConfig());
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private static ShyHurricaneOptionsParam spool(boolean enabled, int maxMegabytes) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public boolean isSpoolEnabled() { return enabled; }
+            @Override public int getSpoolMaxMegabytes() { return maxMegabytes; }
+        };
+    }
+
+    private static boolean append(DiskSpool spool, int kind, String text) {
+        byte[] data = ("xx" + text + "yy").getBytes(StandardCharsets.UTF_8);
+        return spool.append(kind, data, 2, data.length - 4);
+    }
+
+    private static List<String> replayAll(DiskSpool spool) throws Exception {
+        List<String> records = new ArrayList<>();
+        spool.replay((kind, data, offset, length) -> {
+            records.add(kind + ":" + new String(data, offset, length, StandardCharsets.UTF_8));
+            return true;
+        }, Integer.MAX_VALUE);
+        return records;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void replaysInOrderAcrossSegments() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 256), () -> dir, 64);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(append(spool, i % 2 == 0 ? DiskSpool.KIND_INDEX : DiskSpool.KIND_FINDING, "record-" + i));
+        }
+        assertFalse(spool.isEmpty());
+        assertTrue(segmentCount() > 1);
+
+        List<String> records = replayAll(spool);
+        assertEquals(20, records.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals((i % 2 == 0 ? DiskSpool.KIND_INDEX : DiskSpool.KIND_FINDING) + ":record-" + i, records.get(i));
+        }
+        assertTrue(spool.isEmpty());
+        assertEquals(0, spool.pendingBytes());
+        assertEquals(1, segmentCount());
+        spool.close();
+    }
+
+    @Test
+    void replayStopsWhenRecordNotDelivered() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 256), () -> dir);
+        append(spool, DiskSpool.KIND_INDEX, "a");
+        append(spool, DiskSpool.KIND_INDEX, "b");
+        append(spool, DiskSpool.KIND_INDEX, "c");
+
+        List<String> seen = new ArrayList<>();
+        int delivered = spool.replay((kind, data, offset, length) -> {
+            String text = new String(data, offset, length, StandardCharsets.UTF_8);
+            seen.add(text);
+            return !"b".equals(text);
+        }, 100);
+        assertEquals(1, delivered);
+        assertEquals(List.of("a", "b"), seen);
+
+        assertThrows(IOException.class, () -> spool.replay((kind, data, offset, length) -> {
+            throw new IOException("down");
+        }, 100));
+        assertEquals(List.of("1:b", "1:c"), replayAll(spool));
+        spool.close();
+    }
+
+    @Test
+    void appendDoesNotWaitForDelivery() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 256), () -> dir);
+        append(spool, DiskSpool.KIND_INDEX, "a");
+
+        ExecutorService appender = Executors.newSingleThreadExecutor();
+        try {
+            int delivered = spool.replay((kind, data, offset, length) -> {
+                // a slow server: appends from other threads go through meanwhile
+                assertTrue(appender.submit(() -> append(spool, DiskSpool.KIND_INDEX, "b")).get(5, TimeUnit.SECONDS));
+                return true;
+            }, 1);
+            assertEquals(1, delivered);
+        } finally {
+            appender.shutdownNow();
+        }
+        assertEquals(List.of("1:b"), replayAll(spool));
+        spool.close();
+    }
+
+    @Test
+    void resumesFromCursorAfterRestart() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 256), () -> dir);
+        append(spool, DiskSpool.KIND_INDEX, "a");
+        append(spool, DiskSpool.KIND_INDEX, "b");
+        spool.replay((kind, data, offset, length) -> true, 1);
+        spool.close();
+
+        DiskSpool reopened = new DiskSpool(spool(true, 256), () -> dir);
+        append(reopened, DiskSpool.KIND_FINDING, "c");
+        assertEquals(List.of("1:b", "2:c"), replayAll(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void skipsCorruptRecords() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 256), () -> dir);
+        append(spool, DiskSpool.KIND_INDEX, "good");
+        append(spool, DiskSpool.KIND_INDEX, "bad");
+        spool.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // flip a byte in the payload of the last record
+            file.seek(file.length() - 1);
+            int b = file.read();
+            file.seek(file.length() - 1);
+            file.write(b ^ 0xff);
+        }
+
+        DiskSpool reopened = new DiskSpool(spool(true, 256), () -> dir);
+        append(reopened, DiskSpool.KIND_INDEX, "after");
+        assertEquals(List.of("1:good", "1:after"), replayAll(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void discardsOldestSegmentsWhenFull() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(true, 1), () -> dir, 256 * 1024);
+        byte[] record = new byte[100 * 1024];
+        for (int i = 0; i < 20; i++) {
+            record[0] = (byte) i;
+            assertTrue(spool.append(DiskSpool.KIND_INDEX, record, 0, record.length));
+        }
+        assertTrue(spool.pendingBytes() <= 1024 * 1024);
+
+        List<Integer> firstBytes = new ArrayList<>();
+        spool.replay((kind, data, offset, length) -> firstBytes.add((int) data[offset]), 100);
+        assertEquals(19, firstBytes.get(firstBytes.size() - 1).intValue());
+        assertTrue(firstBytes.get(0) > 0);
+        spool.close();
+    }
+
+    @Test
+    void disabledSpoolDoesNothing() throws Exception {
+        DiskSpool spool = new DiskSpool(spool(false, 256), () -> dir);
+        assertFalse(append(spool, DiskSpool.KIND_INDEX, "a"));
+        assertTrue(spool.isEmpty());
+        assertEquals(List.of(), replayAll(spool));
+        assertEquals(0, segmentCount());
+    }
+}
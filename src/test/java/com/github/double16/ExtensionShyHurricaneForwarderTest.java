@@ -2,6 +2,11 @@ package com.github.double16;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.network.HttpHeader;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.parosproxy.paros.network.HttpResponseHeader;
+import org.parosproxy.paros.network.HttpSender;
 import org.zaproxy.zap.eventBus.Event;
 import org.zaproxy.zap.extension.alert.AlertEventPublisher;
 
@@ -12,11 +17,14 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ExtensionShyHurricaneForwarderTest {
 
+    private static final long SECOND = 1_000_000_000L;
+
     private ExtensionShyHurricaneForwarder ext;
 
     @BeforeEach
@@ -49,18 +57,9 @@ class ExtensionShyHurricaneForwarderTest {
     }
 
     @Test
-    void getMcpServerPath_joinsWithSingleSlash() throws Exception {
-        setParam(ext, new ShyHurricaneOptionsParam() {
-            @Override public String getMcpServerUrl() { return "http://example.com"; }
-        });
-        String p1 = (String) invokePrivate(ext, "getMcpServerPath", new Class[]{String.class}, "/index");
-        assertEquals("http://example.com/index", p1);
-
-        setParam(ext, new ShyHurricaneOptionsParam() {
-            @Override public String getMcpServerUrl() { return "http://example.com/"; }
-        });
-        String p2 = (String) invokePrivate(ext, "getMcpServerPath", new Class[]{String.class}, "index");
-        assertEquals("http://example.com/index", p2);
+    void serverPath_joinsWithSingleSlash() {
+        assertEquals("http://example.com/index", ShardRouter.join("http://example.com", "/index"));
+        assertEquals("http://example.com/index", ShardRouter.join("http://example.com/", "index"));
     }
 
     @Test
@@ -124,6 +123,77 @@ class ExtensionShyHurricaneForwarderTest {
         assertEquals(1, pending.size());
     }
 
+    @Test
+    void onHttpResponseReceive_countsSkippedMessages() {
+        setParam(ext, new ShyHurricaneOptionsParam() {
+            @Override public boolean isOnlyInScope() { return false; }
+            @Override public boolean isInitiatorsAll() { return false; }
+            @Override public String getInitiatorsSelectedCsv() { return "1"; }
+        });
+        HttpMessage msg = new HttpMessage();
+        HttpResponseHeader res = new HttpResponseHeader();
+        res.setHeader(HttpHeader.CONTENT_TYPE, "image/png");
+        msg.setResponseHeader(res);
+
+        ext.onHttpResponseReceive(msg, 2, null);
+        ext.onHttpResponseReceive(msg, 1, null);
+
+        Map<String, Object> metrics = ext.getMetricsSnapshot();
+        assertEquals(2L, metrics.get("messages.seen"));
+        assertEquals(1L, metrics.get("messages.skipped.initiator"));
+        assertEquals(1L, metrics.get("messages.skipped.contentType"));
+        assertEquals(0L, metrics.get("messages.skipped.scope"));
+        assertEquals(0L, metrics.get("messages.queued"));
+        assertEquals(0, metrics.get("index.queue.size"));
+    }
+
+    @Test
+    void onHttpResponseReceive_throttledMessagesDoNotSuppressLaterOnes() throws Exception {
+        AtomicLong nanoTime = new AtomicLong();
+        ExtensionShyHurricaneForwarder forwarder = new ExtensionShyHurricaneForwarder(new ShyHurricaneOptionsParam() {
+            @Override public boolean isOnlyInScope() { return false; }
+            @Override public String getInitiatorLimitsCsv() { return HttpSender.ACTIVE_SCANNER_INITIATOR + ":100:1"; }
+            @Override public int getNearDupRepresentatives() { return 3; }
+        }, nanoTime::get);
+        String page = "<html><body><div class=\"nav\"><a href=\"/\">Home</a> <a href=\"/products\">Products</a></div>"
+                + "<h1>Results for %s</h1><p>No products matched your search. Try a different keyword or browse the"
+                + " categories below.</p><ul><li>Books</li><li>Music</li><li>Games</li><li>Garden</li></ul>"
+                + "<footer>Copyright 2024 Example Store, all rights reserved.</footer></body></html>";
+        HttpMessage a = scannerMessage("http://example.com/search?q=1", String.format(page, "a1"));
+        HttpMessage b = scannerMessage("http://example.com/search?q=2", String.format(page, "b2"));
+        HttpMessage c = scannerMessage("http://example.com/search?q=3", String.format(page, "c3"));
+        int scanner = HttpSender.ACTIVE_SCANNER_INITIATOR;
+
+        forwarder.onHttpResponseReceive(a, scanner, null);
+        // rate limited: neither remembered as forwarded nor counted as a representative
+        forwarder.onHttpResponseReceive(b, scanner, null);
+        forwarder.onHttpResponseReceive(c, scanner, null);
+        assertEquals(1L, forwarder.getMetricsSnapshot().get("messages.queued"));
+        assertEquals(2L, forwarder.getMetricsSnapshot().get("messages.skipped.rateLimited"));
+
+        nanoTime.addAndGet(SECOND);
+        // exact repeat of a throttled message
+        forwarder.onHttpResponseReceive(b, scanner, null);
+        nanoTime.addAndGet(SECOND);
+        // near duplicate of the forwarded messages, the cluster has room for it
+        forwarder.onHttpResponseReceive(c, scanner, null);
+
+        Map<String, Object> metrics = forwarder.getMetricsSnapshot();
+        assertEquals(3L, metrics.get("messages.queued"));
+        assertEquals(0L, metrics.get("messages.skipped.duplicate"));
+        assertEquals(0L, metrics.get("messages.skipped.nearDuplicate"));
+    }
+
+    private static HttpMessage scannerMessage(String url, String body) throws Exception {
+        HttpMessage msg = new HttpMessage();
+        msg.setRequestHeader(new HttpRequestHeader("GET " + url + " HTTP/1.1\r\n\r\n"));
+        HttpResponseHeader res = new HttpResponseHeader();
+        res.setStatusCode(200);
+        msg.setResponseHeader(res);
+        msg.setResponseBody(body);
+        return msg;
+    }
+
     @Test
     void alertFingerprint_isDeterministic() throws Exception {
         Map<String, String> m = new HashMap<>();
@@ -0,0 +1,140 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.core.scanner.Alert;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FindingRendererTest {
+
+    private static Alert alert(String uri, String param) {
+        Alert alert = new Alert(40012, Alert.RISK_HIGH, Alert.CONFIDENCE_MEDIUM, "Cross Site Scripting (Reflected)");
+        alert.setAlertRef("40012-1");
+        alert.setUri(uri);
+        alert.setDescription("Reflected XSS.");
+        alert.setOtherInfo("Reflected without encoding.");
+        alert.setEvidence("<script>alert(1)</script>");
+        alert.setParam(param);
+        alert.setPostData("q=1");
+        alert.setInputVector("Query parameter");
+        alert.setAttack("<script>alert(1)</script>");
+        alert.setSolution("Encode output.");
+        alert.setReference("https://owasp.org/xss\nhttps://cwe.mitre.org/79");
+        alert.setCweId(79);
+        alert.setWascId(8);
+        return alert;
+    }
+
+    @Test
+    void rendersEverySection() {
+        String markdown = new FindingRenderer().render(alert("https://example.com/?q=x", "q"));
+        assertEquals("""
+                # Cross Site Scripting (Reflected) at https://example.com/?q=x
+
+                **Summary**
+                Reflected XSS.
+                Risk: High
+                Confidence: Medium
+                Reflected without encoding.
+
+                **Discovery Method**
+                Discovered by OWASP ZAP (Plugin ID: 40012)
+                Evidence: `<script>alert(1)</script>`
+
+                **Reproduction Steps**
+                Access the following URL: `GET https://example.com/?q=x`
+                Parameter: `q`
+                Data: `q=1`
+                Input vector: `Query parameter`
+                Attack: `<script>alert(1)</script>`
+
+                **Solution**
+                Encode output.
+
+                **References**
+                - CWE-79
+                - WASC-8
+                - https://owasp.org/xss
+                - https://cwe.mitre.org/79""", markdown);
+    }
+
+    @Test
+    void omitsBlankSections() {
+        Alert alert = new Alert(10020, Alert.RISK_LOW, Alert.CONFIDENCE_HIGH, "Missing Header");
+        alert.setUri("https://example.com/");
+        alert.setDescription("The header is missing.");
+        alert.setMethod("POST");
+        alert.setOtherInfo(" ");
+
+        assertEquals("""
+                # Missing Header at https://example.com/
+
+                **Summary**
+                The header is missing.
+                Risk: Low
+                Confidence: High
+
+                **Discovery Method**
+                Discovered by OWASP ZAP (Plugin ID: 10020)
+
+                **Reproduction Steps**
+                Access the following URL: `POST https://example.com/`
+                """, new FindingRenderer().render(alert));
+    }
+
+    @Test
+    void reusesRuleSectionsAcrossAlerts() {
+        FindingRenderer renderer = new FindingRenderer();
+        String first = renderer.render(alert("https://example.com/a", "a"));
+        String second = renderer.render(alert("https://example.com/b", "b"));
+
+        assertEquals(1, renderer.getMisses());
+        assertEquals(1, renderer.getHits());
+        assertTrue(first.contains("`GET https://example.com/a`\nParameter: `a`"));
+        assertTrue(second.contains("`GET https://example.com/b`\nParameter: `b`"));
+        assertEquals(first.substring(first.indexOf("**Solution**")), second.substring(second.indexOf("**Solution**")));
+    }
+
+    @Test
+    void changedRuleSectionsAreRenderedAgain() {
+        FindingRenderer renderer = new FindingRenderer();
+        renderer.render(alert("https://example.com/a", "a"));
+        Alert changed = alert("https://example.com/a", "a");
+        changed.setSolution("Use a template engine that escapes.");
+        changed.setCweId(80);
+
+        String markdown = renderer.render(changed);
+        assertTrue(markdown.contains("**Solution**\nUse a template engine that escapes.\n"));
+        assertTrue(markdown.contains("- CWE-80\n"));
+        assertEquals(2, renderer.getMisses());
+        assertEquals(1, renderer.cachedRules());
+    }
+
+    @Test
+    void comparesTextsByValue() {
+        FindingRenderer renderer = new FindingRenderer();
+        renderer.render(alert("https://example.com/a", "a"));
+        // equal texts in new instances, as read back from the database
+        Alert copy = alert("https://example.com/b", "b");
+        copy.setDescription(new String("Reflected XSS."));
+        copy.setReference(new String("https://owasp.org/xss\nhttps://cwe.mitre.org/79"));
+        renderer.render(copy);
+        assertEquals(1, renderer.getHits());
+
+        Alert sameLength = alert("https://example.com/c", "c");
+        sameLength.setDescription("Reflected XSZ.");
+        assertTrue(renderer.render(sameLength).contains("**Summary**\nReflected XSZ.\n"));
+        assertEquals(2, renderer.getMisses());
+    }
+
+    @Test
+    void cacheIsBounded() {
+        FindingRenderer renderer = new FindingRenderer(2);
+        for (int i = 0; i < 5; i++) {
+            Alert alert = alert("https://example.com/", "q");
+            alert.setAlertRef("40012-" + i);
+            renderer.render(alert);
+        }
+        assertEquals(2, renderer.cachedRules());
+    }
+}
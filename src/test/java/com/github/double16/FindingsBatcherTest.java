@@ -0,0 +1,174 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.double16.BatchFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FindingsBatcherTest {
+
+    /**
+     * Single posts one at a time, so their order is predictable.
+     */
+    private static SenderThreads inOrder() {
+        return new SenderThreads("test", new ShyHurricaneOptionsParam() {
+            @Override public int getMaxInFlightRequests() { return 1; }
+        });
+    }
+
+    @Test
+    void batchesUpToMaxEntries() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        FindingsBatcher batcher = new FindingsBatcher(batching(true, 2, 1 << 20), FINDINGS.recording(posts, 200), null, metrics, inOrder());
+        for (String target : new String[]{"a", "b", "c", "d", "e"}) {
+            batcher.add(target, "title " + target, "# " + target);
+        }
+        batcher.flush();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, "a", "b"),
+                Post.of(IndexForwarder.NDJSON, "c", "d"),
+                Post.of(IndexForwarder.JSON, "e")), posts);
+        assertEquals(5, metrics.get(ForwarderMetrics.Counter.FINDINGS_SENT));
+    }
+
+    @Test
+    void batchesUpToMaxBytes() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        FindingsBatcher batcher = new FindingsBatcher(batching(true, 100, 250), FINDINGS.recording(posts, 200), null, new ForwarderMetrics(), inOrder());
+        String markdown = "x".repeat(60);
+        for (String target : new String[]{"a", "b", "c"}) {
+            batcher.add(target, "t", markdown);
+        }
+        batcher.flush();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, "a", "b"),
+                Post.of(IndexForwarder.JSON, "c")), posts);
+    }
+
+    @Test
+    void keepsABatchPerRoute() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        List<Object> routes = new ArrayList<>();
+        IndexForwarder.Sink sink = new IndexForwarder.Sink() {
+            @Override
+            public int post(String contentType, byte[] body, int offset, int length) {
+                throw new AssertionError("posted without a route");
+            }
+
+            @Override
+            public Object route(String host) {
+                return host.startsWith("b.") ? "b" : "a";
+            }
+
+            @Override
+            public int post(Object route, String contentType, byte[] body, int offset, int length) {
+                routes.add(route);
+                posts.add(FINDINGS.parse(contentType, body, offset, length));
+                return 200;
+            }
+        };
+        FindingsBatcher batcher = new FindingsBatcher(batching(true, 100, 1 << 20), sink, null, new ForwarderMetrics(), inOrder());
+        for (String target : new String[]{"http://a.example.com/1", "http://b.example.com/2", "http://a.example.com/3",
+                "http://b.example.com/4"}) {
+            batcher.add(target, "t", "m");
+        }
+        batcher.flush();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, "http://a.example.com/1", "http://a.example.com/3"),
+                Post.of(IndexForwarder.NDJSON, "http://b.example.com/2", "http://b.example.com/4")), posts);
+        assertEquals(List.of("a", "b"), routes);
+    }
+
+    @Test
+    void disabled_postsEachFinding() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        FindingsBatcher batcher = new FindingsBatcher(batching(false, 100, 1 << 20), FINDINGS.recording(posts, 200), null, new ForwarderMetrics(), inOrder());
+        batcher.add("a", "t", "m");
+        batcher.add("b", "t", "m");
+        batcher.flush();
+
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, "a"), Post.of(IndexForwarder.JSON, "b")), posts);
+    }
+
+    @Test
+    void unsupportedBulk_fallsBackOnce() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        FindingsBatcher batcher = new FindingsBatcher(batching(true, 100, 1 << 20), (contentType, body, offset, length) -> {
+            posts.add(FINDINGS.parse(contentType, body, offset, length));
+            return IndexForwarder.NDJSON.equals(contentType) ? 415 : 201;
+        }, null, metrics, inOrder());
+        batcher.add("a", "t", "m");
+        batcher.add("b", "t", "m");
+        batcher.flush();
+        batcher.add("c", "t", "m");
+        batcher.add("d", "t", "m");
+        batcher.flush();
+
+        assertFalse(batcher.isBulkSupported());
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, "a", "b"),
+                Post.of(IndexForwarder.JSON, "a"),
+                Post.of(IndexForwarder.JSON, "b"),
+                Post.of(IndexForwarder.JSON, "c"),
+                Post.of(IndexForwarder.JSON, "d")), posts);
+        assertEquals(4, metrics.get(ForwarderMetrics.Counter.FINDINGS_SENT));
+    }
+
+    @Test
+    void badDocument_keepsBulkPosting() throws IOException {
+        List<Post> posts = new ArrayList<>();
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        FindingsBatcher batcher = new FindingsBatcher(batching(true, 100, 1 << 20), (contentType, body, offset, length) -> {
+            Post post = FINDINGS.parse(contentType, body, offset, length);
+            posts.add(post);
+            return post.documents().contains("bad") ? 400 : 201;
+        }, null, metrics, inOrder());
+        batcher.add("a", "t", "m");
+        batcher.add("bad", "t", "m");
+        batcher.flush();
+        batcher.add("c", "t", "m");
+        batcher.add("d", "t", "m");
+        batcher.flush();
+
+        assertTrue(batcher.isBulkSupported());
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, "a", "bad"),
+                Post.of(IndexForwarder.JSON, "a"),
+                Post.of(IndexForwarder.JSON, "bad"),
+                Post.of(IndexForwarder.NDJSON, "c", "d")), posts);
+        assertEquals(3, metrics.get(ForwarderMetrics.Counter.FINDINGS_SENT));
+        assertEquals(1, metrics.get(ForwarderMetrics.Counter.FINDINGS_FAILED));
+    }
+
+    @Test
+    void unavailableServer_spoolsEachFinding(@TempDir Path dir) throws Exception {
+        ShyHurricaneOptionsParam param = batching(true, 100, 1 << 20);
+        DiskSpool spool = new DiskSpool(param, () -> dir);
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        FindingsBatcher batcher = new FindingsBatcher(param, FINDINGS.recording(new ArrayList<>(), 503), spool, metrics, inOrder());
+        batcher.add("a", "t", "m");
+        batcher.add("b", "t", "m");
+        batcher.flush();
+        assertEquals(2, metrics.get(ForwarderMetrics.Counter.FINDINGS_FAILED));
+
+        List<Post> replayed = new ArrayList<>();
+        assertEquals(2, spool.replay((kind, data, offset, length) -> {
+            assertEquals(DiskSpool.KIND_FINDING, kind);
+            replayed.add(FINDINGS.parse(IndexForwarder.JSON, data, offset, length));
+            return true;
+        }, 10));
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, "a"), Post.of(IndexForwarder.JSON, "b")), replayed);
+        spool.close();
+    }
+}
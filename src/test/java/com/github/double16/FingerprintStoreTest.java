@@ -0,0 +1,137 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintStoreTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private static FingerprintStore store(int ttlMinutes, int maxEntries) {
+        return new FingerprintStore(new ShyHurricaneOptionsParam() {
+            @Override public int getAlertDedupTtlMinutes() { return ttlMinutes; }
+            @Override public int getAlertDedupMaxEntries() { return maxEntries; }
+        });
+    }
+
+    @Test
+    void add_rejectsRepeatsWithinTtl() {
+        FingerprintStore store = store(10, 1000);
+        long hash = Hashing.hash64("10001/XSS/3/3");
+
+        assertTrue(store.add(hash, 0));
+        assertFalse(store.add(hash, 5 * MINUTE));
+        assertTrue(store.add(Hashing.hash64("10001/XSS/3/2"), 5 * MINUTE));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void add_acceptsAgainAfterTtl() {
+        FingerprintStore store = store(10, 1000);
+        assertTrue(store.add(42, 0));
+        assertTrue(store.add(42, 10 * MINUTE));
+        assertFalse(store.add(42, 11 * MINUTE));
+    }
+
+    @Test
+    void contains_doesNotRecord() {
+        FingerprintStore store = store(10, 1000);
+        assertFalse(store.contains(42, 0));
+        assertEquals(0, store.size());
+        store.add(42, 0);
+        assertTrue(store.contains(42, 5 * MINUTE));
+        assertFalse(store.contains(42, 10 * MINUTE));
+    }
+
+    @Test
+    void zeroTtl_neverExpires() {
+        FingerprintStore store = store(0, 1000);
+        assertTrue(store.add(0, 0));
+        assertFalse(store.add(0, Long.MAX_VALUE / 2));
+        assertEquals(0, store.expire(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void expire_removesOldEntriesAndKeepsTheRest() {
+        FingerprintStore store = store(10, 100_000);
+        for (int i = 1; i <= 1000; i++) {
+            store.add(i, i < 500 ? 0 : 9 * MINUTE);
+        }
+        assertEquals(1000, store.size());
+
+        assertEquals(499, store.expire(10 * MINUTE));
+        assertEquals(501, store.size());
+        assertFalse(store.add(600, 10 * MINUTE));
+        assertTrue(store.add(1, 10 * MINUTE));
+    }
+
+    @Test
+    void size_isBoundedByEvictingOldest() {
+        FingerprintStore store = store(0, 100);
+        for (int i = 1; i <= 1000; i++) {
+            store.add(i, i);
+        }
+        assertTrue(store.size() <= 100);
+        // the newest is still remembered, the oldest was forgotten
+        assertFalse(store.add(1000, 1001));
+        assertTrue(store.add(1, 1001));
+    }
+
+    @Test
+    void eviction_dropsFewEntriesEvenWhenMostShareTheOldestTime() {
+        FingerprintStore store = store(0, 100);
+        for (int i = 1; i <= 99; i++) {
+            store.add(i, 0);
+        }
+        store.add(100, 1000);
+        store.add(101, 1001);
+        assertEquals(100 - 100 / 8 + 1, store.size());
+        assertFalse(store.add(100, 1002));
+    }
+
+    @Test
+    void stripes_shareTheLimitAndExpireTogether() {
+        FingerprintStore store = new FingerprintStore(() -> 10 * MINUTE, () -> 1600, 16);
+        for (int i = 1; i <= 10_000; i++) {
+            store.add(i, i < 5000 ? 0 : 9 * MINUTE);
+        }
+        assertTrue(store.size() <= 1600, "size " + store.size());
+        assertFalse(store.add(10_000, 9 * MINUTE));
+
+        store.expire(10 * MINUTE);
+        assertTrue(store.size() > 0);
+        assertFalse(store.add(10_000, 10 * MINUTE));
+        assertTrue(store.add(1, 10 * MINUTE));
+    }
+
+    @Test
+    void expire_keepsEntriesAddedConcurrently() throws Exception {
+        FingerprintStore store = new FingerprintStore(() -> 10 * MINUTE, () -> 1_000_000, 4);
+        for (int i = 1; i <= 20_000; i++) {
+            store.add(-i, 0);
+        }
+        Thread[] adders = new Thread[4];
+        for (int t = 0; t < adders.length; t++) {
+            int first = t * 10_000 + 1;
+            adders[t] = new Thread(() -> {
+                for (int i = first; i < first + 10_000; i++) {
+                    store.add(i, 9 * MINUTE);
+                }
+            });
+            adders[t].start();
+        }
+        for (int i = 0; i < 20; i++) {
+            store.expire(10 * MINUTE);
+        }
+        for (Thread adder : adders) {
+            adder.join();
+        }
+        store.expire(10 * MINUTE);
+
+        assertEquals(40_000, store.size());
+        for (int i = 1; i <= 40_000; i++) {
+            assertFalse(store.add(i, 10 * MINUTE));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlushSchedulerTest {
+
+    /**
+     * A flush handed to the executor, run by the test instead of after its delay.
+     */
+    private static final class Task extends FutureTask<Void> implements ScheduledFuture<Void> {
+        final long delayNanos;
+
+        Task(Runnable command, long delayNanos) {
+            super(command, null);
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(delayNanos, other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Keeps the scheduled flushes for the test, only shutting down is real.
+     */
+    private static final class ManualExecutor extends ScheduledThreadPoolExecutor {
+        final List<Task> tasks = new ArrayList<>();
+
+        ManualExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task task = new Task(command, unit.toNanos(delay));
+            tasks.add(task);
+            return task;
+        }
+    }
+
+    private final ManualExecutor executor = new ManualExecutor();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicInteger flushes = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private FlushScheduler scheduler(int maxDelay, int highRiskDelay, int batchSize, int minInterval) {
+        ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam() {
+            @Override public int getFindingsFlushMaxDelayMillis() { return maxDelay; }
+            @Override public int getFindingsFlushHighRiskDelayMillis() { return highRiskDelay; }
+            @Override public int getFindingsFlushBatchSize() { return batchSize; }
+            @Override public int getFindingsFlushMinIntervalMillis() { return minInterval; }
+        };
+        FlushScheduler[] holder = new FlushScheduler[1];
+        holder[0] = new FlushScheduler(executor, () -> {
+            holder[0].flushStarted();
+            flushes.incrementAndGet();
+        }, param, nanoTime::get);
+        return holder[0];
+    }
+
+    /**
+     * @return the delays of the flushes that are still scheduled, in milliseconds
+     */
+    private List<Long> pending() {
+        List<Long> delays = new ArrayList<>();
+        for (Task task : executor.tasks) {
+            if (!task.isDone()) {
+                delays.add(task.getDelay(TimeUnit.MILLISECONDS));
+            }
+        }
+        return delays;
+    }
+
+    /**
+     * Runs the scheduled flushes as if their delays had passed.
+     */
+    private void runPending() {
+        List<Task> tasks = new ArrayList<>(executor.tasks);
+        executor.tasks.clear();
+        tasks.forEach(Task::run);
+    }
+
+    @Test
+    void coalescesAlertsIntoOneFlush() {
+        FlushScheduler scheduler = scheduler(200, 100, 1000, 0);
+        for (int i = 1; i <= 20; i++) {
+            scheduler.alertQueued(i, false);
+        }
+        assertEquals(List.of(200L), pending());
+        runPending();
+        assertEquals(1, flushes.get());
+        assertEquals(List.of(), pending());
+    }
+
+    @Test
+    void highRiskAlertMovesFlushEarlier() {
+        FlushScheduler scheduler = scheduler(60_000, 50, 1000, 0);
+        scheduler.alertQueued(1, false);
+        scheduler.alertQueued(2, true);
+        assertEquals(List.of(50L), pending());
+        runPending();
+        assertEquals(1, flushes.get());
+    }
+
+    @Test
+    void queueSizeTriggersImmediateFlush() {
+        FlushScheduler scheduler = scheduler(60_000, 60_000, 3, 0);
+        scheduler.alertQueued(1, false);
+        scheduler.alertQueued(2, false);
+        scheduler.alertQueued(3, false);
+        assertEquals(List.of(0L), pending());
+        runPending();
+        assertEquals(1, flushes.get());
+    }
+
+    @Test
+    void minimumIntervalSpacesFlushes() {
+        FlushScheduler scheduler = scheduler(0, 0, 1000, 300);
+        scheduler.alertQueued(1, false);
+        assertEquals(List.of(0L), pending());
+        runPending();
+        assertEquals(1, flushes.get());
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        scheduler.alertQueued(1, true);
+        assertEquals(List.of(200L), pending());
+        runPending();
+        assertEquals(2, flushes.get());
+    }
+
+    @Test
+    void cancelDropsScheduledFlush() throws InterruptedException {
+        FlushScheduler scheduler = scheduler(100, 100, 1000, 0);
+        scheduler.alertQueued(1, false);
+        scheduler.cancel();
+        runPending();
+        assertEquals(0, flushes.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        // no exception after the executor is gone
+        scheduler.alertQueued(2, true);
+        assertEquals(List.of(), pending());
+    }
+}
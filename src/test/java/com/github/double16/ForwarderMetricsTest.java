@@ -0,0 +1,71 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForwarderMetricsTest {
+
+    @Test
+    void countersAccumulate() {
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        metrics.increment(ForwarderMetrics.Counter.MESSAGES_SEEN);
+        metrics.increment(ForwarderMetrics.Counter.MESSAGES_SEEN);
+        metrics.add(ForwarderMetrics.Counter.BYTES_SENT, 1024);
+        metrics.add(ForwarderMetrics.Counter.BYTES_SENT, 0);
+
+        assertEquals(2, metrics.get(ForwarderMetrics.Counter.MESSAGES_SEEN));
+        assertEquals(1024, metrics.get(ForwarderMetrics.Counter.BYTES_SENT));
+        assertEquals(0, metrics.get(ForwarderMetrics.Counter.QUEUED));
+    }
+
+    @Test
+    void gaugesKeepTheLastValue() {
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        metrics.set(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION, 150);
+        metrics.set(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION, 40);
+
+        assertEquals(40, metrics.get(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION));
+        assertEquals(40L, metrics.snapshot().get("http.throttle.utilizationPercent"));
+    }
+
+    @Test
+    void histogramPercentilesUseBucketBounds() {
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        for (int i = 0; i < 90; i++) {
+            metrics.record(ForwarderMetrics.Timer.POST_RTT, TimeUnit.MICROSECONDS.toNanos(800));
+        }
+        for (int i = 0; i < 10; i++) {
+            metrics.record(ForwarderMetrics.Timer.POST_RTT, TimeUnit.MILLISECONDS.toNanos(40));
+        }
+        metrics.record(ForwarderMetrics.Timer.POST_RTT, TimeUnit.SECONDS.toNanos(30));
+
+        ForwarderMetrics.Histogram rtt = metrics.histogram(ForwarderMetrics.Timer.POST_RTT);
+        assertEquals(101, rtt.getCount());
+        assertEquals(1_000, rtt.percentileMicros(50));
+        assertEquals(50_000, rtt.percentileMicros(99));
+        assertEquals(30_000_000, rtt.percentileMicros(100));
+    }
+
+    @Test
+    void snapshotHasCountersAndHistogramSummaries() {
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        metrics.increment(ForwarderMetrics.Counter.INDEX_SENT);
+        metrics.record(ForwarderMetrics.Timer.SERIALIZATION, TimeUnit.MICROSECONDS.toNanos(30));
+        metrics.record(ForwarderMetrics.Timer.SERIALIZATION, TimeUnit.MICROSECONDS.toNanos(2_000));
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        assertEquals(1L, snapshot.get("index.sent"));
+        assertEquals(0L, snapshot.get("messages.seen"));
+        assertEquals(2L, snapshot.get("index.serialize.count"));
+        assertEquals(1_015L, snapshot.get("index.serialize.meanMicros"));
+        assertEquals(2_000L, snapshot.get("index.serialize.maxMicros"));
+        assertEquals(1L, snapshot.get("index.serialize.le.50us"));
+        assertEquals(1L, snapshot.get("index.serialize.le.2.5ms"));
+        assertEquals(0L, snapshot.get("index.serialize.le.inf"));
+        assertEquals(0L, snapshot.get("http.rtt.count"));
+    }
+}
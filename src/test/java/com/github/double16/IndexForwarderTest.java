@@ -0,0 +1,418 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.double16.BatchFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexForwarderTest {
+
+    private static ShyHurricaneOptionsParam bounded(int capacity, BackpressurePolicy policy) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public boolean isIndexBatchEnabled() { return false; }
+            @Override public int getIndexQueueCapacity() { return capacity; }
+            @Override public BackpressurePolicy getBackpressurePolicy() { return policy; }
+            @Override public int getIndexQueueBlockTimeoutMillis() { return 5000; }
+        };
+    }
+
+    @Test
+    void close_drainsQueuedEntriesInOrder() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(batching(false, 100, 1 << 20), INDEX.recording(posts, 200), null, new ForwarderMetrics());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(forwarder.offer(entry(i)));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.JSON, 0),
+                Post.of(IndexForwarder.JSON, 1),
+                Post.of(IndexForwarder.JSON, 2),
+                Post.of(IndexForwarder.JSON, 3),
+                Post.of(IndexForwarder.JSON, 4)), posts);
+        assertEquals(0, forwarder.size());
+    }
+
+    @Test
+    void sinkFailure_doesNotStopWorker() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(batching(false, 100, 1 << 20), (contentType, body, offset, length) -> {
+            Post post = INDEX.parse(contentType, body, offset, length);
+            if (post.equals(Post.of(IndexForwarder.JSON, 1))) {
+                throw new IllegalStateException("boom");
+            }
+            posts.add(post);
+            return 200;
+        }, null, new ForwarderMetrics());
+        forwarder.start();
+        forwarder.offer(entry(1));
+        forwarder.offer(entry(2));
+        forwarder.close();
+
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, 2)), posts);
+    }
+
+    @Test
+    void batching_coalescesEntriesIntoNdjsonBoundedByCount() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        IndexForwarder forwarder = new IndexForwarder(batching(true, 2, 1 << 20), INDEX.recording(posts, 200), null, metrics);
+        for (int i = 0; i < 5; i++) {
+            forwarder.offer(entry(i));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, 0, 1),
+                Post.of(IndexForwarder.NDJSON, 2, 3),
+                Post.of(IndexForwarder.NDJSON, 4)), posts);
+        assertEquals(5, metrics.get(ForwarderMetrics.Counter.INDEX_SENT));
+        assertEquals(5, metrics.histogram(ForwarderMetrics.Timer.SERIALIZATION).getCount());
+    }
+
+    @Test
+    void batching_boundedByBytes() throws IOException {
+        ByteArrayOutputStream one = new ByteArrayOutputStream();
+        TrafficEntryWriter.write(entry(0), one);
+        int lineSize = one.size() + 1;
+
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        // two lines fit but three don't
+        IndexForwarder forwarder = new IndexForwarder(batching(true, 100, lineSize * 2 + 2), INDEX.recording(posts, 200), null, new ForwarderMetrics());
+        for (int i = 0; i < 3; i++) {
+            forwarder.offer(entry(i));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, 0, 1),
+                Post.of(IndexForwarder.NDJSON, 2)), posts);
+    }
+
+    @Test
+    void batching_keepsABatchPerRoute() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        List<Object> routes = new CopyOnWriteArrayList<>();
+        IndexForwarder.Sink sink = new IndexForwarder.Sink() {
+            @Override
+            public int post(String contentType, byte[] body, int offset, int length) {
+                throw new AssertionError("posted without a route");
+            }
+
+            @Override
+            public Object route(String host) {
+                return host.startsWith("b.") ? "b" : "a";
+            }
+
+            @Override
+            public int post(Object route, String contentType, byte[] body, int offset, int length) {
+                routes.add(route);
+                posts.add(INDEX.parse(contentType, body, offset, length));
+                return 200;
+            }
+        };
+        IndexForwarder forwarder = new IndexForwarder(batching(true, 100, 1 << 20), sink, null, new ForwarderMetrics());
+        forwarder.offer(entry(0));
+        forwarder.offer(new TrafficEntry(0, "GET", "http://b.example.com/1", List.of(), null, 200, List.of(), null, 0));
+        forwarder.offer(new TrafficEntry(0, "GET", "http://b.example.com/2", List.of(), null, 200, List.of(), null, 0));
+        forwarder.offer(entry(3));
+        forwarder.start();
+        forwarder.close();
+
+        // interleaved routes don't split each other's batches
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, 0, 3),
+                new Post(IndexForwarder.NDJSON, List.of("http://b.example.com/1", "http://b.example.com/2"))), posts);
+        assertEquals(List.of("a", "b"), routes);
+    }
+
+    @Test
+    void batching_fallsBackToSinglePostsWhenRejected() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(batching(true, 2, 1 << 20), (contentType, body, offset, length) -> {
+            posts.add(INDEX.parse(contentType, body, offset, length));
+            return IndexForwarder.NDJSON.equals(contentType) ? 415 : 200;
+        }, null, new ForwarderMetrics());
+        for (int i = 0; i < 3; i++) {
+            forwarder.offer(entry(i));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertFalse(forwarder.isBulkSupported());
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, 0, 1),
+                Post.of(IndexForwarder.JSON, 0),
+                Post.of(IndexForwarder.JSON, 1),
+                Post.of(IndexForwarder.JSON, 2)), posts);
+    }
+
+    @Test
+    void batching_keepsBulkWhenOneEntryIsBad() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        IndexForwarder forwarder = new IndexForwarder(batching(true, 2, 1 << 20), (contentType, body, offset, length) -> {
+            Post post = INDEX.parse(contentType, body, offset, length);
+            posts.add(post);
+            return post.documents().contains("http://example.com/1") ? 422 : 200;
+        }, null, metrics);
+        for (int i = 0; i < 4; i++) {
+            forwarder.offer(entry(i));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertTrue(forwarder.isBulkSupported());
+        assertEquals(List.of(
+                Post.of(IndexForwarder.NDJSON, 0, 1),
+                Post.of(IndexForwarder.JSON, 0),
+                Post.of(IndexForwarder.JSON, 1),
+                Post.of(IndexForwarder.NDJSON, 2, 3)), posts);
+        assertEquals(1, metrics.get(ForwarderMetrics.Counter.INDEX_FAILED));
+    }
+
+    @Test
+    void unavailableServer_spoolsEntries(@TempDir Path dir) throws Exception {
+        ShyHurricaneOptionsParam param = batching(true, 2, 1 << 20);
+        DiskSpool spool = new DiskSpool(param, () -> dir);
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        IndexForwarder forwarder = new IndexForwarder(param, (contentType, body, offset, length) -> {
+            if (INDEX.parse(contentType, body, offset, length).equals(Post.of(IndexForwarder.NDJSON, 0, 1))) {
+                return 503;
+            }
+            throw new IOException("connection refused");
+        }, spool, metrics);
+        for (int i = 0; i < 3; i++) {
+            forwarder.offer(entry(i));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        List<Post> replayed = new ArrayList<>();
+        spool.replay((kind, data, offset, length) -> {
+            assertEquals(DiskSpool.KIND_INDEX, kind);
+            replayed.add(INDEX.parse(IndexForwarder.JSON, data, offset, length));
+            return true;
+        }, 100);
+        assertEquals(List.of(
+                Post.of(IndexForwarder.JSON, 0),
+                Post.of(IndexForwarder.JSON, 1),
+                Post.of(IndexForwarder.JSON, 2)), replayed);
+        assertEquals(3, metrics.get(ForwarderMetrics.Counter.INDEX_FAILED));
+        assertEquals(0, metrics.get(ForwarderMetrics.Counter.INDEX_SENT));
+        spool.close();
+    }
+
+    @Test
+    void close_spoolsWhatWasNotSentInTime(@TempDir Path dir) throws Exception {
+        ShyHurricaneOptionsParam param = batching(true, 2, 1 << 20);
+        DiskSpool spool = new DiskSpool(param, () -> dir);
+        CountDownLatch posting = new CountDownLatch(1);
+        ForwarderMetrics metrics = new ForwarderMetrics();
+        // the first batch hangs until the sender is interrupted
+        IndexForwarder forwarder = new IndexForwarder(param, (contentType, body, offset, length) -> {
+            posting.countDown();
+            new CountDownLatch(1).await();
+            return 200;
+        }, spool, metrics);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(forwarder.offer(entry(i)));
+        }
+        forwarder.start();
+        assertTrue(posting.await(5, TimeUnit.SECONDS));
+        forwarder.close(0);
+
+        assertEquals(5, forwarder.getSpilled());
+        assertEquals(0, metrics.get(ForwarderMetrics.Counter.INDEX_FAILED));
+        List<String> replayed = new ArrayList<>();
+        spool.replay((kind, data, offset, length) ->
+                replayed.addAll(INDEX.parse(IndexForwarder.JSON, data, offset, length).documents()), 100);
+        replayed.sort(null);
+        assertEquals(Post.of(IndexForwarder.JSON, 0, 1, 2, 3, 4).documents(), replayed);
+        spool.close();
+    }
+
+    @Test
+    void dropNewest_rejectsEntriesOverCapacity() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(bounded(2, BackpressurePolicy.DROP_NEWEST), INDEX.recording(posts, 200), null, new ForwarderMetrics());
+        assertTrue(forwarder.offer(entry(0)));
+        assertTrue(forwarder.offer(entry(1)));
+        assertFalse(forwarder.offer(entry(2)));
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(1, forwarder.getDropped(BackpressurePolicy.DROP_NEWEST));
+        assertEquals(1, forwarder.getDropped());
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, 0), Post.of(IndexForwarder.JSON, 1)), posts);
+    }
+
+    @Test
+    void dropOldest_makesSpaceForNewEntries() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(bounded(2, BackpressurePolicy.DROP_OLDEST), INDEX.recording(posts, 200), null, new ForwarderMetrics());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(forwarder.offer(entry(i)));
+        }
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(2, forwarder.getDropped(BackpressurePolicy.DROP_OLDEST));
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, 2), Post.of(IndexForwarder.JSON, 3)), posts);
+    }
+
+    @Test
+    void spillToDisk_writesOverflowToSpool(@TempDir Path dir) throws Exception {
+        ShyHurricaneOptionsParam param = bounded(1, BackpressurePolicy.SPILL_TO_DISK);
+        DiskSpool spool = new DiskSpool(param, () -> dir);
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(param, INDEX.recording(posts, 200), spool, new ForwarderMetrics());
+        assertTrue(forwarder.offer(entry(0)));
+        assertTrue(forwarder.offer(entry(1)));
+        forwarder.start();
+        forwarder.close();
+
+        assertEquals(1, forwarder.getSpilled());
+        assertEquals(0, forwarder.getDropped());
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, 0)), posts);
+        List<Post> replayed = new ArrayList<>();
+        spool.replay((kind, data, offset, length) -> replayed.add(INDEX.parse(IndexForwarder.JSON, data, offset, length)), 100);
+        assertEquals(List.of(Post.of(IndexForwarder.JSON, 1)), replayed);
+        spool.close();
+    }
+
+    @Test
+    void spillToDisk_doesNotWaitForReplay(@TempDir Path dir) throws Exception {
+        ShyHurricaneOptionsParam param = bounded(1, BackpressurePolicy.SPILL_TO_DISK);
+        DiskSpool spool = new DiskSpool(param, () -> dir);
+        spool.append(DiskSpool.KIND_INDEX, new byte[]{'{', '}'}, 0, 2);
+        IndexForwarder forwarder = new IndexForwarder(param, INDEX.recording(new CopyOnWriteArrayList<>(), 200), spool,
+                new ForwarderMetrics());
+        assertTrue(forwarder.offer(entry(0)));
+
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread replay = new Thread(() -> {
+            try {
+                // a replay stuck on an unavailable server
+                spool.replay((kind, data, offset, length) -> {
+                    delivering.countDown();
+                    release.await();
+                    return false;
+                }, 100);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        replay.start();
+        try {
+            assertTrue(delivering.await(5, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            assertTrue(forwarder.offer(entry(1)));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(1, forwarder.getSpilled());
+        } finally {
+            release.countDown();
+            replay.join();
+            forwarder.close();
+            spool.close();
+        }
+    }
+
+    @Test
+    void block_waitsForSpace() {
+        List<Post> posts = new CopyOnWriteArrayList<>();
+        IndexForwarder forwarder = new IndexForwarder(bounded(1, BackpressurePolicy.BLOCK), (contentType, body, offset, length) -> {
+            Thread.sleep(20);
+            posts.add(INDEX.parse(contentType, body, offset, length));
+            return 200;
+        }, null, new ForwarderMetrics());
+        forwarder.start();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(forwarder.offer(entry(i)));
+        }
+        forwarder.close();
+
+        assertEquals(0, forwarder.getDropped());
+        assertEquals(5, posts.size());
+    }
+
+    @Test
+    void block_dropsWhenNotRunning() {
+        IndexForwarder forwarder = new IndexForwarder(bounded(1, BackpressurePolicy.BLOCK), INDEX.recording(new ArrayList<>(), 200), null, new ForwarderMetrics());
+        assertTrue(forwarder.offer(entry(0)));
+        assertFalse(forwarder.offer(entry(1)));
+        assertEquals(1, forwarder.getDropped(BackpressurePolicy.BLOCK));
+    }
+
+    @Test
+    void laneIndex_isStablePerHost() {
+        int lane = IndexForwarder.laneIndex("https://a.example.com/one", 4);
+        assertEquals(lane, IndexForwarder.laneIndex("https://a.example.com/two?x=1", 4));
+        assertEquals(lane, IndexForwarder.laneIndex("https://A.Example.com", 4));
+        assertEquals(0, IndexForwarder.laneIndex("https://a.example.com/", 1));
+        assertEquals(0, IndexForwarder.laneIndex(null, 4));
+
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            used.add(IndexForwarder.laneIndex("https://host" + i + ".example.com/", 4));
+        }
+        assertEquals(Set.of(0, 1, 2, 3), used);
+    }
+
+    @Test
+    void multipleSenders_keepCaptureOrderPerHost() {
+        ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam() {
+            @Override public boolean isIndexBatchEnabled() { return false; }
+            @Override public int getIndexSenders() { return 4; }
+        };
+        Map<String, List<String>> byHost = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        IndexForwarder forwarder = new IndexForwarder(param, (contentType, body, offset, length) -> {
+            String endpoint = INDEX.parse(contentType, body, offset, length).documents().get(0);
+            String host = endpoint.substring(0, endpoint.lastIndexOf('/'));
+            byHost.computeIfAbsent(host, h -> new CopyOnWriteArrayList<>()).add(endpoint);
+            threads.add(Thread.currentThread().getName());
+            return 200;
+        }, null, new ForwarderMetrics());
+        assertEquals(4, forwarder.senders());
+
+        forwarder.start();
+        for (int i = 0; i < 25; i++) {
+            for (int h = 0; h < 8; h++) {
+                assertTrue(forwarder.offer(new TrafficEntry(0, "GET", "http://host" + h + ".example.com/" + i,
+                        List.of(), null, 200, List.of(), null, 0)));
+            }
+        }
+        forwarder.close();
+
+        assertEquals(8, byHost.size());
+        for (Map.Entry<String, List<String>> host : byHost.entrySet()) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                expected.add(host.getKey() + "/" + i);
+            }
+            assertEquals(expected, host.getValue());
+        }
+        assertTrue(threads.size() > 1, "sent from " + threads);
+        assertEquals(0, forwarder.size());
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InitiatorLimitsTest {
+
+    @Test
+    void parse_readsEntriesAndIgnoresBadOnes() {
+        InitiatorLimits limits = InitiatorLimits.parse(" 2:10:50, 4:0.5 ,x:1:1,3:abc,1:100:0,,5:150:-3,300:20:5");
+
+        assertEquals(new InitiatorLimits.Limit(10, 50), limits.get(2));
+        assertEquals(new InitiatorLimits.Limit(0.5, 0), limits.get(4));
+        // clamped to 100% and unlimited, so no entry
+        assertSame(InitiatorLimits.Limit.NONE, limits.get(5));
+        assertSame(InitiatorLimits.Limit.NONE, limits.get(1));
+        assertSame(InitiatorLimits.Limit.NONE, limits.get(3));
+        assertSame(InitiatorLimits.Limit.NONE, limits.get(-1));
+        assertEquals(new InitiatorLimits.Limit(20, 5), limits.get(300));
+        assertEquals(3, limits.asMap().size());
+    }
+
+    @Test
+    void parse_emptyIsNone() {
+        assertSame(InitiatorLimits.NONE, InitiatorLimits.parse(null));
+        assertSame(InitiatorLimits.NONE, InitiatorLimits.parse(" "));
+        assertTrue(InitiatorLimits.parse("1:100").isEmpty());
+    }
+
+    @Test
+    void format_roundTrips() {
+        Map<Integer, InitiatorLimits.Limit> map = new LinkedHashMap<>();
+        map.put(4, new InitiatorLimits.Limit(0.5, 0));
+        map.put(1, InitiatorLimits.Limit.NONE);
+        map.put(2, new InitiatorLimits.Limit(10, 50));
+
+        String csv = InitiatorLimits.format(map);
+        assertEquals("2:10:50,4:0.5:0", csv);
+        assertEquals(InitiatorLimits.parse(csv).asMap(), InitiatorLimits.parse("4:0.5:0,2:10:50").asMap());
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class InitiatorThrottleTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+    private long now;
+    private final InitiatorThrottle throttle = new InitiatorThrottle(metrics, () -> now);
+
+    @Test
+    void noLimits_allowsEverything() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(throttle.allow(2, InitiatorLimits.NONE));
+        }
+    }
+
+    @Test
+    void samplesAtTheConfiguredRatio() {
+        InitiatorLimits limits = InitiatorLimits.parse("2:10:0,4:0:0");
+        int allowed = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (throttle.allow(2, limits)) {
+                allowed++;
+            }
+            assertFalse(throttle.allow(4, limits));
+            assertTrue(throttle.allow(1, limits));
+        }
+        assertTrue(allowed > 800 && allowed < 1200, "allowed " + allowed);
+        assertEquals(20_000L - allowed, metrics.get(ForwarderMetrics.Counter.SKIPPED_SAMPLED));
+    }
+
+    @Test
+    void rateLimitsEachInitiator() {
+        InitiatorLimits limits = InitiatorLimits.parse("2:100:5,3:100:2");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.allow(2, limits));
+        }
+        assertFalse(throttle.allow(2, limits));
+        assertTrue(throttle.allow(3, limits));
+        now = SECOND / 5;
+        assertTrue(throttle.allow(2, limits));
+        assertEquals(1L, metrics.get(ForwarderMetrics.Counter.SKIPPED_RATE_LIMITED));
+
+        // a new rate takes effect with a full bucket
+        InitiatorLimits raised = InitiatorLimits.parse("2:100:50");
+        for (int i = 0; i < 50; i++) {
+            assertTrue(throttle.allow(2, raised));
+        }
+        assertFalse(throttle.allow(2, raised));
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.parosproxy.paros.network.HttpResponseHeader;
+import org.parosproxy.paros.network.HttpSender;
+
+class NearDuplicateFilterTest {
+
+    private static final String PAGE = "<html><head><title>Search results</title></head><body>"
+            + "<div class=\"nav\"><a href=\"/\">Home</a> <a href=\"/products\">Products</a> <a href=\"/about\">About us</a></div>"
+            + "<h1>Results for %s</h1><p>No products matched your search. Try a different keyword or browse the"
+            + " categories below.</p><ul><li>Books</li><li>Music</li><li>Games</li><li>Garden</li><li>Kitchen</li>"
+            + "<li>Toys</li><li>Sports</li><li>Clothing</li></ul><footer>Copyright 2024 Example Store, all rights"
+            + " reserved. Contact support for help with your order.</footer></body></html>";
+
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+
+    private NearDuplicateFilter filter(boolean enabled, int representatives) {
+        return new NearDuplicateFilter(new ShyHurricaneOptionsParam() {
+            @Override public boolean isNearDupEnabled() { return enabled; }
+            @Override public int getNearDupMaxDistance() { return 3; }
+            @Override public int getNearDupRepresentatives() { return representatives; }
+        }, metrics, 4);
+    }
+
+    /**
+     * Checks the message and counts it as forwarded unless it's a near duplicate.
+     *
+     * @return true if it's a near duplicate
+     */
+    private static boolean offer(NearDuplicateFilter filter, HttpMessage msg, int initiator) {
+        NearDuplicateFilter.Sample sample = filter.sample(msg, initiator);
+        if (filter.isNearDuplicate(sample)) {
+            return true;
+        }
+        filter.forwarded(sample);
+        return false;
+    }
+
+    private static HttpMessage message(String url, String body) throws Exception {
+        HttpMessage msg = new HttpMessage();
+        msg.setRequestHeader(new HttpRequestHeader("GET " + url + " HTTP/1.1\r\n\r\n"));
+        HttpResponseHeader res = new HttpResponseHeader();
+        res.setStatusCode(200);
+        msg.setResponseHeader(res);
+        msg.setResponseBody(body);
+        return msg;
+    }
+
+    private static long simHash(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return NearDuplicateFilter.simHash(bytes, bytes.length);
+    }
+
+    @Test
+    void simHash_isCloseForReflectedPayloads() {
+        long a = simHash(String.format(PAGE, "shoes"));
+        long b = simHash(String.format(PAGE, "&lt;script&gt;alert(1)&lt;/script&gt;"));
+        long other = simHash("{\"error\":\"internal\",\"trace\":[\"at com.example.Search.run\",\"at java.lang.Thread.run\"]}");
+
+        assertTrue(Long.bitCount(a ^ b) <= 3, "distance " + Long.bitCount(a ^ b));
+        assertTrue(Long.bitCount(a ^ other) > 3, "distance " + Long.bitCount(a ^ other));
+        assertEquals(a, simHash(String.format(PAGE, "shoes")));
+    }
+
+    @Test
+    void forwardsRepresentativesOfEachCluster() throws Exception {
+        NearDuplicateFilter filter = filter(true, 2);
+        int scanner = HttpSender.ACTIVE_SCANNER_INITIATOR;
+
+        assertFalse(offer(filter, message("http://example.com/search?q=1", String.format(PAGE, "a1")), scanner));
+        assertFalse(offer(filter, message("http://example.com/search?q=2", String.format(PAGE, "b2")), scanner));
+        assertTrue(offer(filter, message("http://example.com/search?q=3", String.format(PAGE, "c3")), scanner));
+        assertTrue(offer(filter, message("http://example.com/search?q=4", String.format(PAGE, "d4")), scanner));
+
+        // a different response on the same endpoint is a new cluster
+        assertFalse(offer(filter, message("http://example.com/search?q=5", "SQL syntax error near 'x' at line 1"), scanner));
+        // a different endpoint has its own clusters
+        assertFalse(offer(filter, message("http://example.com/other", String.format(PAGE, "e5")), scanner));
+
+        assertEquals(2L, metrics.get(ForwarderMetrics.Counter.SKIPPED_NEAR_DUPLICATE));
+        assertEquals(2, filter.endpointCount());
+    }
+
+    @Test
+    void responsesNotForwarded_doNotCountAsRepresentatives() throws Exception {
+        NearDuplicateFilter filter = filter(true, 1);
+        int scanner = HttpSender.ACTIVE_SCANNER_INITIATOR;
+
+        // checked, then dropped by the queue
+        HttpMessage dropped = message("http://example.com/search?q=1", String.format(PAGE, "a1"));
+        assertFalse(filter.isNearDuplicate(filter.sample(dropped, scanner)));
+        assertFalse(offer(filter, message("http://example.com/search?q=2", String.format(PAGE, "b2")), scanner));
+        assertTrue(offer(filter, message("http://example.com/search?q=3", String.format(PAGE, "c3")), scanner));
+    }
+
+    @Test
+    void onlyFiltersActiveScannerTraffic() throws Exception {
+        NearDuplicateFilter filter = filter(true, 1);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(offer(filter, message("http://example.com/", String.format(PAGE, i)), HttpSender.PROXY_INITIATOR));
+        }
+        assertEquals(0, filter.endpointCount());
+    }
+
+    @Test
+    void disabled_neverSkips() throws Exception {
+        NearDuplicateFilter filter = filter(false, 1);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(offer(filter, message("http://example.com/", String.format(PAGE, i)),
+                    HttpSender.ACTIVE_SCANNER_INITIATOR));
+        }
+    }
+
+    @Test
+    void endpointsAreBounded() throws Exception {
+        NearDuplicateFilter filter = filter(true, 1);
+        for (int i = 0; i < 10; i++) {
+            offer(filter, message("http://example.com/p" + i, "body"), HttpSender.ACTIVE_SCANNER_INITIATOR);
+        }
+        assertEquals(4, filter.endpointCount());
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadCompressorTest {
+
+    private static final byte[] DATA = "<html>".concat("<p>hello world</p>".repeat(500)).concat("</html>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void gzip_roundTrips() throws IOException {
+        PayloadCompressor compressor = new PayloadCompressor();
+        int size = compressor.compress(Compression.GZIP, 6, DATA, 0, DATA.length);
+
+        assertTrue(size < DATA.length / 5);
+        byte[] inflated = read(new GZIPInputStream(new ByteArrayInputStream(compressor.array(), 0, size)));
+        assertArrayEquals(DATA, inflated);
+    }
+
+    @Test
+    void deflate_roundTripsSlice() throws IOException {
+        PayloadCompressor compressor = new PayloadCompressor();
+        int size = compressor.compress(Compression.DEFLATE, 1, DATA, 6, 18);
+
+        byte[] inflated = read(new InflaterInputStream(new ByteArrayInputStream(compressor.array(), 0, size)));
+        assertEquals("<p>hello world</p>", new String(inflated, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compressor_isReusable() throws IOException {
+        PayloadCompressor compressor = new PayloadCompressor();
+        compressor.compress(Compression.GZIP, 6, DATA, 0, DATA.length);
+        int size = compressor.compress(Compression.GZIP, 9, DATA, 0, 6);
+
+        byte[] inflated = read(new GZIPInputStream(new ByteArrayInputStream(compressor.array(), 0, size)));
+        assertEquals("<html>", new String(inflated, StandardCharsets.UTF_8));
+        compressor.end();
+    }
+}
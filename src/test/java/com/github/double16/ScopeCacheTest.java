@@ -0,0 +1,93 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+
+class ScopeCacheTest {
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final AtomicBoolean inScope = new AtomicBoolean(true);
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+
+    private ScopeCache cache(int maxEntries) {
+        return new ScopeCache(msg -> {
+            evaluations.incrementAndGet();
+            return inScope.get();
+        }, metrics, maxEntries);
+    }
+
+    private static HttpMessage message(String url) throws Exception {
+        HttpMessage msg = new HttpMessage();
+        msg.setRequestHeader(new HttpRequestHeader("GET " + url + " HTTP/1.1\r\n\r\n"));
+        return msg;
+    }
+
+    @Test
+    void key_normalizesSchemeAndHostAndDropsQuery() throws Exception {
+        String key = ScopeCache.key(message("https://Example.COM/App/a?id=1").getRequestHeader());
+        assertTrue(key.startsWith("https://example.com:"), key);
+        assertTrue(key.endsWith("/App/a"), key);
+        assertEquals(ScopeCache.key(message("http://example.com/x?a=1").getRequestHeader()),
+                ScopeCache.key(message("http://EXAMPLE.com/x?b=2").getRequestHeader()));
+        assertNotEquals(ScopeCache.key(message("http://example.com/x").getRequestHeader()),
+                ScopeCache.key(message("http://example.com/X").getRequestHeader()));
+    }
+
+    @Test
+    void repeatedEndpointsAreEvaluatedOnce() throws Exception {
+        ScopeCache cache = cache(16);
+        assertTrue(cache.isInScope(message("http://example.com/a?x=1")));
+        assertTrue(cache.isInScope(message("http://example.com/a?x=2")));
+        assertTrue(cache.isInScope(message("http://example.com/b")));
+
+        assertEquals(2, evaluations.get());
+        assertEquals(1L, metrics.get(ForwarderMetrics.Counter.SCOPE_CACHE_HITS));
+        assertEquals(2L, metrics.get(ForwarderMetrics.Counter.SCOPE_CACHE_MISSES));
+    }
+
+    @Test
+    void scopeChangeInvalidates() throws Exception {
+        ScopeCache cache = cache(16);
+        assertTrue(cache.isInScope(message("http://example.com/a")));
+
+        inScope.set(false);
+        assertTrue(cache.isInScope(message("http://example.com/a")));
+        cache.sessionScopeChanged(null);
+        assertEquals(0, cache.size());
+        assertFalse(cache.isInScope(message("http://example.com/a")));
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        ScopeCache cache = cache(2);
+        cache.isInScope(message("http://example.com/a"));
+        cache.isInScope(message("http://example.com/b"));
+        cache.isInScope(message("http://example.com/a"));
+        cache.isInScope(message("http://example.com/c"));
+        assertEquals(2, cache.size());
+        assertEquals(3, evaluations.get());
+
+        cache.isInScope(message("http://example.com/a"));
+        assertEquals(3, evaluations.get());
+        cache.isInScope(message("http://example.com/b"));
+        assertEquals(4, evaluations.get());
+    }
+
+    @Test
+    void decisionEvaluatedDuringClearIsNotStored() throws Exception {
+        ScopeCache[] holder = new ScopeCache[1];
+        holder[0] = new ScopeCache(msg -> {
+            evaluations.incrementAndGet();
+            holder[0].clear();
+            return true;
+        }, metrics, 16);
+        assertTrue(holder[0].isInScope(message("http://example.com/a")));
+        assertEquals(0, holder[0].size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SenderThreadsTest {
+
+    private static ShyHurricaneOptionsParam param(boolean virtual, int maxInFlight) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public boolean isVirtualThreads() { return virtual; }
+            @Override public int getMaxInFlightRequests() { return maxInFlight; }
+        };
+    }
+
+    @Test
+    void runAll_runsEveryTaskWithinTheConcurrencyCap() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        // the first tasks wait for each other, so the cap is reached before any of them finishes
+        CountDownLatch full = new CountDownLatch(3);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        try (SenderThreads senders = new SenderThreads("test", param(true, 3))) {
+            senders.runAll(30, i -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                full.countDown();
+                try {
+                    full.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                seen.add(i);
+            });
+            assertEquals(SenderThreads.isVirtualSupported(), senders.isVirtual());
+        }
+        assertEquals(30, seen.size());
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    void runAll_singleTaskRunsOnCaller() {
+        Thread caller = Thread.currentThread();
+        try (SenderThreads senders = new SenderThreads("test", param(false, 4))) {
+            senders.runAll(1, i -> assertSame(caller, Thread.currentThread()));
+        }
+    }
+
+    @Test
+    void runAll_afterCloseRunsOnCaller() {
+        Thread caller = Thread.currentThread();
+        SenderThreads senders = new SenderThreads("test", param(false, 4));
+        senders.close();
+        AtomicInteger count = new AtomicInteger();
+        senders.runAll(3, i -> {
+            assertSame(caller, Thread.currentThread());
+            count.incrementAndGet();
+        });
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    void threadFactory_platformThreadsAreDaemons() {
+        ThreadFactory factory = SenderThreads.threadFactory("ShyHurricane-Test", param(false, 1));
+        Thread thread = factory.newThread(() -> { });
+        assertTrue(thread.isDaemon());
+        assertEquals("ShyHurricane-Test-1", thread.getName());
+    }
+
+    @Test
+    void threadFactory_virtualWhenSupported() {
+        ThreadFactory factory = SenderThreads.threadFactory("ShyHurricane-Test", param(true, 1));
+        Thread thread = factory.newThread(() -> { });
+        assertEquals("ShyHurricane-Test-1", thread.getName());
+        // virtual threads are always daemons, platform threads are created as daemons
+        assertTrue(thread.isDaemon());
+        assertEquals(SenderThreads.isVirtualSupported(), !thread.getClass().equals(Thread.class));
+    }
+}
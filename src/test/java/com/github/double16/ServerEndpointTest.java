@@ -0,0 +1,105 @@
+package com.github.double16;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerEndpointTest {
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+
+    private final ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam() {
+        @Override public int getRetryMaxAttempts() { return 3; }
+        @Override public int getRetryInitialBackoffMillis() { return 10; }
+        @Override public int getRetryMaxBackoffMillis() { return 40; }
+        @Override public int getBreakerFailureThreshold() { return 4; }
+        @Override public int getBreakerOpenMillis() { return 60_000; }
+    };
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/index", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            Integer status = statuses.poll();
+            exchange.sendResponseHeaders(status != null ? status : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/index";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private int post(ServerEndpoint endpoint) throws IOException {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        return endpoint.post(url, "application/json", body, 0, body.length);
+    }
+
+    @Test
+    void retriesServerErrors() throws IOException {
+        statuses.add(503);
+        statuses.add(502);
+        try (ShyHurricaneClient client = new ShyHurricaneClient(param, new ForwarderMetrics())) {
+            ServerEndpoint endpoint = new ServerEndpoint("/index", client, param);
+            assertEquals(200, post(endpoint));
+        }
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() throws IOException {
+        statuses.add(400);
+        try (ShyHurricaneClient client = new ShyHurricaneClient(param, new ForwarderMetrics())) {
+            ServerEndpoint endpoint = new ServerEndpoint("/index", client, param);
+            assertEquals(400, post(endpoint));
+            assertEquals(CircuitBreaker.State.CLOSED, endpoint.getState());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void openBreakerShortCircuits() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            statuses.add(500);
+        }
+        try (ShyHurricaneClient client = new ShyHurricaneClient(param, new ForwarderMetrics())) {
+            ServerEndpoint endpoint = new ServerEndpoint("/index", client, param);
+            assertEquals(500, post(endpoint));
+            // the fourth failure opens the breaker and ends the retries
+            assertEquals(500, post(endpoint));
+            assertEquals(CircuitBreaker.State.OPEN, endpoint.getState());
+            assertThrows(CircuitBreaker.OpenException.class, () -> post(endpoint));
+        }
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    void backoffGrowsAndIsCapped() {
+        ServerEndpoint endpoint = new ServerEndpoint("/index", null, param);
+        for (int i = 0; i < 20; i++) {
+            long first = endpoint.backoffMillis(1);
+            assertTrue(first >= 5 && first < 10, "first " + first);
+            long second = endpoint.backoffMillis(2);
+            assertTrue(second >= 10 && second < 20, "second " + second);
+            long capped = endpoint.backoffMillis(30);
+            assertTrue(capped >= 20 && capped < 40, "capped " + capped);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.double16;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    /**
+     * A server that counts index posts and answers with the queued statuses, then 200. Its findings endpoint is
+     * down.
+     */
+    private static final class Server {
+        final HttpServer http;
+        final AtomicInteger requests = new AtomicInteger();
+        final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+
+        Server() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.createContext("/index", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                requests.incrementAndGet();
+                Integer status = statuses.poll();
+                exchange.sendResponseHeaders(status != null ? status : 200, -1);
+                exchange.close();
+            });
+            http.createContext("/findings", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+            });
+            http.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/";
+        }
+    }
+
+    private Server a;
+    private Server b;
+    private ShyHurricaneClient client;
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+    private volatile String urls;
+    private volatile boolean replicate;
+    private volatile int attempts = 1;
+
+    private final ShyHurricaneOptionsParam param = new ShyHurricaneOptionsParam() {
+        @Override public String getMcpServerUrl() { return urls; }
+        @Override public boolean isServersReplicate() { return replicate; }
+        @Override public int getRetryMaxAttempts() { return attempts; }
+        @Override public int getRetryInitialBackoffMillis() { return 1; }
+        @Override public int getBreakerFailureThreshold() { return 1; }
+        @Override public int getBreakerOpenMillis() { return 60_000; }
+    };
+
+    @BeforeEach
+    void setUp() throws IOException {
+        a = new Server();
+        b = new Server();
+        client = new ShyHurricaneClient(param, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        a.http.stop(0);
+        b.http.stop(0);
+    }
+
+    private ShardRouter router() {
+        return new ShardRouter(param, () -> client, metrics, "/index", "/findings");
+    }
+
+    private static int post(IndexForwarder.Sink sink, String host) throws Exception {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        return sink.post(sink.route(host), IndexForwarder.JSON, body, 0, body.length);
+    }
+
+    /**
+     * @return the base URL of the server the sink posts the host's documents to
+     */
+    private static String primary(IndexForwarder.Sink sink, String host) {
+        return ((ShardRouter.Route) sink.route(host)).primary().getBaseUrl();
+    }
+
+    /**
+     * @return a host the sink routes to the server
+     */
+    private static String hostOn(IndexForwarder.Sink sink, String url) {
+        for (int i = 0; ; i++) {
+            if (primary(sink, "host" + i + ".example.com").equals(url)) {
+                return "host" + i + ".example.com";
+            }
+        }
+    }
+
+    private static Map<String, String> owners(ShardRouter router, int hosts) {
+        IndexForwarder.Sink sink = router.indexSink();
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < hosts; i++) {
+            String host = "host" + i + ".example.com";
+            owners.put(host, primary(sink, host));
+        }
+        return owners;
+    }
+
+    @Test
+    void singleServer_takesEverything() throws Exception {
+        urls = a.url();
+        IndexForwarder.Sink sink = router().indexSink();
+        assertEquals(200, post(sink, "one.example.com"));
+        assertEquals(200, post(sink, null));
+        assertEquals(2, a.requests.get());
+    }
+
+    @Test
+    void noServer_fails() {
+        urls = "";
+        assertThrows(IOException.class, () -> post(router().indexSink(), "example.com"));
+    }
+
+    @Test
+    void hostsSpreadEvenlyAndStay() {
+        urls = "http://s1/, http://s2/, http://s3/";
+        Map<String, String> owners = owners(router(), 3000);
+        assertEquals(owners, owners(router(), 3000));
+
+        Map<String, Integer> counts = new HashMap<>();
+        owners.values().forEach(url -> counts.merge(url, 1, Integer::sum));
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > 600 && count < 1400, counts.toString());
+        }
+    }
+
+    @Test
+    void addingServer_onlyMovesHostsToIt() {
+        urls = "http://s1/, http://s2/, http://s3/";
+        ShardRouter router = router();
+        Map<String, String> before = owners(router, 3000);
+        urls = "http://s1/, http://s2/, http://s3/, http://s4/";
+        Map<String, String> after = owners(router, 3000);
+
+        int moved = 0;
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals(after.get(e.getKey()))) {
+                assertEquals("http://s4/", after.get(e.getKey()));
+                moved++;
+            }
+        }
+        assertTrue(moved > 300 && moved < 1200, "moved " + moved);
+    }
+
+    @Test
+    void hostIsCaseInsensitive() {
+        urls = "http://s1/, http://s2/, http://s3/";
+        IndexForwarder.Sink sink = router().indexSink();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(sink.route("host" + i + ".example.com"), sink.route("HOST" + i + ".Example.COM"));
+        }
+    }
+
+    @Test
+    void openBreaker_movesHostsToNextShard() throws Exception {
+        urls = a.url() + "," + b.url();
+        ShardRouter router = router();
+        IndexForwarder.Sink sink = router.indexSink();
+        String host = hostOn(sink, a.url());
+
+        a.statuses.add(503);
+        assertEquals(503, post(sink, host));
+        assertEquals(b.url(), primary(sink, host));
+        assertEquals(200, post(sink, host));
+        assertEquals(1, a.requests.get());
+        assertEquals(1, b.requests.get());
+
+        Map<String, Object> states = new LinkedHashMap<>();
+        router.putStates(states);
+        assertEquals("OPEN", states.get("index.breaker"));
+        assertEquals(2, states.get("servers.count"));
+        assertEquals(1, states.get("servers.available"));
+    }
+
+    @Test
+    void openBreaker_onlyMovesItsEndpoint() throws Exception {
+        urls = a.url() + "," + b.url();
+        ShardRouter router = router();
+        IndexForwarder.Sink index = router.indexSink();
+        IndexForwarder.Sink findings = router.findingsSink();
+        String host = hostOn(index, a.url());
+
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        findings.post(findings.route(host), IndexForwarder.JSON, body, 0, body.length);
+        assertEquals(b.url(), ((ShardRouter.Route) findings.route(host)).primary().getBaseUrl());
+        assertEquals(a.url(), primary(index, host));
+    }
+
+    @Test
+    void routes_differWhenReplicasDiffer() {
+        urls = "http://s1/, http://s2/, http://s3/";
+        replicate = true;
+        IndexForwarder.Sink sink = router().indexSink();
+        ShardRouter.Route first = (ShardRouter.Route) sink.route("host0.example.com");
+        boolean sameReplica = false;
+        boolean otherReplica = false;
+        for (int i = 1; i < 200; i++) {
+            ShardRouter.Route route = (ShardRouter.Route) sink.route("host" + i + ".example.com");
+            assertNotNull(route.replica());
+            assertNotSame(route.primary(), route.replica());
+            if (route.primary() == first.primary()) {
+                // a batch for the first host may only take this host if its replica is the same too
+                assertEquals(route.replica() == first.replica(), route.equals(first));
+                sameReplica |= route.replica() == first.replica();
+                otherReplica |= route.replica() != first.replica();
+            }
+        }
+        assertTrue(sameReplica && otherReplica);
+    }
+
+    @Test
+    void replicate_postsToNextShardToo() throws Exception {
+        urls = a.url() + "," + b.url();
+        replicate = true;
+        IndexForwarder.Sink sink = router().indexSink();
+        assertEquals(200, post(sink, "one.example.com"));
+        assertEquals(1, a.requests.get());
+        assertEquals(1, b.requests.get());
+        assertEquals(1, metrics.get(ForwarderMetrics.Counter.REPLICA_SENT));
+    }
+
+    @Test
+    void replicaFailure_isCountedOnly() throws Exception {
+        urls = a.url() + "," + b.url();
+        replicate = true;
+        ShardRouter router = router();
+        IndexForwarder.Sink sink = router.indexSink();
+        b.statuses.add(500);
+        assertEquals(200, post(sink, hostOn(sink, a.url())));
+        assertEquals(1, metrics.get(ForwarderMetrics.Counter.REPLICA_FAILED));
+        assertEquals(0, metrics.get(ForwarderMetrics.Counter.REPLICA_SENT));
+    }
+
+    @Test
+    void replica_isNotRetried() throws Exception {
+        urls = a.url() + "," + b.url();
+        replicate = true;
+        attempts = 3;
+        IndexForwarder.Sink sink = router().indexSink();
+        b.statuses.add(503);
+        assertEquals(200, post(sink, hostOn(sink, a.url())));
+        assertEquals(1, b.requests.get());
+        assertEquals(1, metrics.get(ForwarderMetrics.Counter.REPLICA_FAILED));
+    }
+
+    @Test
+    void routingHost_readsTrafficAndFindings() {
+        byte[] traffic = ("{\"timestamp\":\"x\",\"request\":{\"method\":\"GET\",\"headers\":{\"a\":\"b\"},"
+                + "\"endpoint\":\"https://Example.com:8443/a?b=c\"},\"response\":{}}").getBytes(StandardCharsets.UTF_8);
+        assertEquals("Example.com:8443", ShardRouter.routingHost(traffic, 0, traffic.length));
+
+        byte[] finding = "{\"target\":\"http://h.example.com/x\",\"title\":\"t\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals("h.example.com", ShardRouter.routingHost(finding, 0, finding.length));
+
+        byte[] other = "{\"title\":{\"target\":\"http://nested/\"}}".getBytes(StandardCharsets.UTF_8);
+        assertNull(ShardRouter.routingHost(other, 0, other.length));
+
+        byte[] garbage = "not json".getBytes(StandardCharsets.UTF_8);
+        assertNull(ShardRouter.routingHost(garbage, 0, garbage.length));
+    }
+
+    @Test
+    void host_ofUrls() {
+        assertEquals("example.com", ShardRouter.host("http://example.com"));
+        assertEquals("example.com:8080", ShardRouter.host("http://example.com:8080/path?q#f"));
+        assertNull(ShardRouter.host("example.com/path"));
+        assertNull(ShardRouter.host(null));
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.double16;
+
+import org.junit.jupiter.api.Test;
+import org.zaproxy.zap.extension.api.ApiException;
+import org.zaproxy.zap.extension.api.ApiResponseSet;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShyHurricaneApiTest {
+
+    @Test
+    void metricsView_returnsSnapshot() throws ApiException {
+        ShyHurricaneApi api = new ShyHurricaneApi(new ExtensionShyHurricaneForwarder() {
+            @Override
+            Map<String, Object> getMetricsSnapshot() {
+                return Map.of("messages.seen", 3L);
+            }
+        });
+        assertEquals("shyHurricane", api.getPrefix());
+        assertInstanceOf(ApiResponseSet.class, api.handleApiView("metrics", null));
+    }
+
+    @Test
+    void unknownView_isRejected() {
+        ShyHurricaneApi api = new ShyHurricaneApi(new ExtensionShyHurricaneForwarder());
+        assertThrows(ApiException.class, () -> api.handleApiView("nope", null));
+    }
+}
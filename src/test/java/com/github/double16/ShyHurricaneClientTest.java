@@ -0,0 +1,110 @@
+package com.github.double16;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShyHurricaneClientTest {
+
+    private HttpServer server;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private String baseUrl;
+    private volatile boolean rejectEncoding;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/index", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null && rejectEncoding) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(415, -1);
+                exchange.close();
+                return;
+            }
+            InputStream body = "gzip".equals(encoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+            received.add((encoding != null ? encoding + " " : "") + exchange.getRequestHeaders().getFirst("Content-Type") + " "
+                    + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            byte[] reply = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(201, reply.length);
+            exchange.getResponseBody().write(reply);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void post_sendsBodySliceAndReturnsStatus() throws IOException {
+        try (ShyHurricaneClient client = new ShyHurricaneClient(new ShyHurricaneOptionsParam(), new ForwarderMetrics())) {
+            byte[] body = "xx{\"a\":1}yy".getBytes(StandardCharsets.UTF_8);
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", body, 2, 7));
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", body, 2, 7));
+        }
+        assertEquals(List.of("application/json {\"a\":1}", "application/json {\"a\":1}"), received);
+    }
+
+    @Test
+    void post_afterCloseFails() {
+        ShyHurricaneClient client = new ShyHurricaneClient(new ShyHurricaneOptionsParam(), new ForwarderMetrics());
+        client.close();
+        assertThrows(IOException.class, () -> client.post(baseUrl + "/index", "application/json", new byte[0], 0, 0));
+    }
+
+    private static ShyHurricaneOptionsParam gzip(int minBytes) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public Compression getCompression() { return Compression.GZIP; }
+            @Override public int getCompressionMinBytes() { return minBytes; }
+        };
+    }
+
+    @Test
+    void post_compressesBodiesOverThreshold() throws IOException {
+        try (ShyHurricaneClient client = new ShyHurricaneClient(gzip(10), new ForwarderMetrics())) {
+            byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+            byte[] large = "{\"a\":\"0123456789\"}".getBytes(StandardCharsets.UTF_8);
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", small, 0, small.length));
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", large, 0, large.length));
+        }
+        assertEquals(List.of("application/json {}", "gzip application/json {\"a\":\"0123456789\"}"), received);
+    }
+
+    @Test
+    void post_reusesCompressorsAndEndsThemOnClose() throws IOException {
+        ShyHurricaneClient client = new ShyHurricaneClient(gzip(0), new ForwarderMetrics());
+        byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", body, 0, body.length));
+        }
+        assertEquals(1, client.idleCompressors());
+        client.close();
+        assertEquals(0, client.idleCompressors());
+    }
+
+    @Test
+    void post_resendsUncompressedWhenEncodingRejected() throws IOException {
+        rejectEncoding = true;
+        try (ShyHurricaneClient client = new ShyHurricaneClient(gzip(0), new ForwarderMetrics())) {
+            byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", body, 0, body.length));
+            assertEquals(201, client.post(baseUrl + "/index", "application/json", body, 0, body.length));
+        }
+        assertEquals(List.of("application/json {\"a\":1}", "application/json {\"a\":1}"), received);
+    }
+}
@@ -37,6 +37,8 @@ class ShyHurricaneOptionsPanelTest {
         ext.minConfidence = org.parosproxy.paros.core.scanner.Alert.CONFIDENCE_HIGH; // index 3
         ext.minRisk = org.parosproxy.paros.core.scanner.Alert.RISK_LOW; // index 1
         ext.initiatorsAll = false;
+        ext.queueCapacity = 2500;
+        ext.backpressure = BackpressurePolicy.DROP_OLDEST; // index 2
 
         // Select one discovered initiator id (if any) to verify selection mapping
         @SuppressWarnings("unchecked")
@@ -53,11 +55,16 @@ class ShyHurricaneOptionsPanelTest {
         @SuppressWarnings("unchecked")
         JComboBox<String> cmbRisk = (JComboBox<String>) getField(panel, "cmbRisk");
         JCheckBox chkAllInitiators = (JCheckBox) getField(panel, "chkAllInitiators");
+        JSpinner spnQueueCapacity = (JSpinner) getField(panel, "spnQueueCapacity");
+        @SuppressWarnings("unchecked")
+        JComboBox<String> cmbBackpressure = (JComboBox<String>) getField(panel, "cmbBackpressure");
 
         assertTrue(chkOnlyInScope.isSelected());
         assertEquals("http://localhost:9000", txtMcpServerUrl.getText());
         assertEquals(3, cmbConfidence.getSelectedIndex());
         assertEquals(1, cmbRisk.getSelectedIndex());
+        assertEquals(2500, spnQueueCapacity.getValue());
+        assertEquals(2, cmbBackpressure.getSelectedIndex());
         assertFalse(chkAllInitiators.isSelected());
 
         if (!oneIdCsv.isEmpty()) {
@@ -66,6 +73,19 @@ class ShyHurricaneOptionsPanelTest {
         }
     }
 
+    @Test
+    void initParam_clampsQueueCapacityToTheSpinnerRange() throws Exception {
+        JSpinner spnQueueCapacity = (JSpinner) getField(panel, "spnQueueCapacity");
+
+        ext.queueCapacity = 0;
+        panel.initParam(null);
+        assertEquals(1, spnQueueCapacity.getValue());
+
+        ext.queueCapacity = 2_000_000;
+        panel.initParam(null);
+        assertEquals(1_000_000, spnQueueCapacity.getValue());
+    }
+
     @Test
     void saveParam_pushesValuesIntoExtension() throws Exception {
         panel.initParam(null);
@@ -79,12 +99,17 @@ class ShyHurricaneOptionsPanelTest {
         JCheckBox chkAllInitiators = (JCheckBox) getField(panel, "chkAllInitiators");
         @SuppressWarnings("unchecked")
         Map<Integer, JCheckBox> boxes = (Map<Integer, JCheckBox>) getField(panel, "initiatorBoxes");
+        JSpinner spnQueueCapacity = (JSpinner) getField(panel, "spnQueueCapacity");
+        @SuppressWarnings("unchecked")
+        JComboBox<String> cmbBackpressure = (JComboBox<String>) getField(panel, "cmbBackpressure");
 
         // Set UI values
         chkOnlyInScope.setSelected(true);
         txtMcpServerUrl.setText(" https://srv/endpoint ");
         cmbConfidence.setSelectedIndex(2); // Medium
         cmbRisk.setSelectedIndex(2); // Medium
+        spnQueueCapacity.setValue(500);
+        cmbBackpressure.setSelectedIndex(0); // Block
 
         // Choose first two initiators explicitly
         List<Integer> chosen = new ArrayList<>();
@@ -100,6 +125,8 @@ class ShyHurricaneOptionsPanelTest {
         assertEquals("https://srv/endpoint", ext.mcpUrl); // trimmed
         assertEquals(org.parosproxy.paros.core.scanner.Alert.CONFIDENCE_MEDIUM, ext.minConfidence);
         assertEquals(org.parosproxy.paros.core.scanner.Alert.RISK_MEDIUM, ext.minRisk);
+        assertEquals(500, ext.queueCapacity);
+        assertEquals(BackpressurePolicy.BLOCK, ext.backpressure);
         assertFalse(ext.initiatorsAll);
 
         if (chosen.size() == 2) {
@@ -143,6 +170,28 @@ class ShyHurricaneOptionsPanelTest {
         }
     }
 
+    @Test
+    void initiatorLimits_roundTrip() throws Exception {
+        ext.limitsCsv = "2:10:50,999:5:0";
+        panel.initParam(null);
+
+        @SuppressWarnings("unchecked")
+        Map<Integer, JSpinner> sample = (Map<Integer, JSpinner>) getField(panel, "sampleSpinners");
+        @SuppressWarnings("unchecked")
+        Map<Integer, JSpinner> rate = (Map<Integer, JSpinner>) getField(panel, "rateSpinners");
+        assertEquals(10.0, sample.get(2).getValue());
+        assertEquals(50, rate.get(2).getValue());
+        assertEquals(100.0, sample.get(1).getValue());
+        assertEquals(0, rate.get(1).getValue());
+
+        sample.get(1).setValue(25.0);
+        rate.get(2).setValue(0);
+        panel.saveParam(null);
+
+        // 999 isn't on the panel and is kept
+        assertEquals("1:25:0,2:10:0,999:5:0", ext.limitsCsv);
+    }
+
     @Test
     void prettyInitiatorLabel_formatsNicely() throws Exception {
         String s = (String) invokePrivateStatic(ShyHurricaneOptionsPanel.class,
@@ -183,6 +232,9 @@ class ShyHurricaneOptionsPanelTest {
         int minRisk = org.parosproxy.paros.core.scanner.Alert.RISK_INFO;
         boolean initiatorsAll;
         String initiatorsCsv = "";
+        String limitsCsv = "";
+        int queueCapacity = 10_000;
+        BackpressurePolicy backpressure = BackpressurePolicy.SPILL_TO_DISK;
 
         @Override public boolean isOnlyInScope() { return onlyInScope; }
         @Override public void setOnlyInScope(boolean v) { onlyInScope = v; }
@@ -201,5 +253,14 @@ class ShyHurricaneOptionsPanelTest {
 
         @Override public String getInitiatorsSelectedCsv() { return initiatorsCsv; }
         @Override public void setInitiatorsSelectedCsv(String v) { initiatorsCsv = v; }
+
+        @Override public String getInitiatorLimitsCsv() { return limitsCsv; }
+        @Override public void setInitiatorLimitsCsv(String v) { limitsCsv = v; }
+
+        @Override public int getIndexQueueCapacity() { return queueCapacity; }
+        @Override public void setIndexQueueCapacity(int v) { queueCapacity = v; }
+
+        @Override public BackpressurePolicy getBackpressurePolicy() { return backpressure; }
+        @Override public void setBackpressurePolicy(BackpressurePolicy v) { backpressure = v; }
     }
 }
@@ -3,6 +3,7 @@ package com.github.double16;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import org.apache.commons.configuration.FileConfiguration;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.XMLConfiguration;
@@ -26,6 +27,98 @@ class ShyHurricaneOptionsParamTest {
         // With initiatorsAll=true any id is considered selected
         assertTrue(p.isInitiatorSelected(0));
         assertTrue(p.isInitiatorSelected(123));
+        assertTrue(p.isIndexBatchEnabled());
+        assertEquals(100, p.getIndexBatchMaxEntries());
+        assertEquals(1024 * 1024, p.getIndexBatchMaxBytes());
+        assertEquals(1000, p.getIndexBatchLingerMillis());
+        assertEquals(5000, p.getConnectTimeoutMillis());
+        assertEquals(30000, p.getRequestTimeoutMillis());
+        assertEquals(8, p.getMaxInFlightRequests());
+        assertFalse(p.isHttp2Enabled());
+        assertEquals(1024 * 1024, p.getRequestBodyMaxBytes());
+        assertEquals(1024 * 1024, p.getResponseBodyMaxBytes());
+        assertEquals(BodyLimitPolicy.TRUNCATE, p.getBodyLimitPolicy());
+        assertEquals(Compression.NONE, p.getCompression());
+        assertEquals(1024, p.getCompressionMinBytes());
+        assertEquals(6, p.getCompressionLevel());
+        assertEquals(24 * 60, p.getAlertDedupTtlMinutes());
+        assertEquals(100_000, p.getAlertDedupMaxEntries());
+        assertEquals(10_000, p.getFindingsFlushMaxDelayMillis());
+        assertEquals(1000, p.getFindingsFlushHighRiskDelayMillis());
+        assertEquals(50, p.getFindingsFlushBatchSize());
+        assertEquals(1000, p.getFindingsFlushMinIntervalMillis());
+        assertTrue(p.isSpoolEnabled());
+        assertEquals(256, p.getSpoolMaxMegabytes());
+        assertEquals(3, p.getRetryMaxAttempts());
+        assertEquals(200, p.getRetryInitialBackoffMillis());
+        assertEquals(5000, p.getRetryMaxBackoffMillis());
+        assertEquals(5, p.getBreakerFailureThreshold());
+        assertEquals(30_000, p.getBreakerOpenMillis());
+        assertEquals(10_000, p.getIndexQueueCapacity());
+        assertEquals(BackpressurePolicy.SPILL_TO_DISK, p.getBackpressurePolicy());
+        assertEquals(100, p.getIndexQueueBlockTimeoutMillis());
+        assertTrue(p.isFindingsBatchEnabled());
+        assertEquals(200, p.getFindingsBatchMaxEntries());
+        assertEquals(1024 * 1024, p.getFindingsBatchMaxBytes());
+        assertEquals(4, p.getIndexSenders());
+        assertFalse(p.isVirtualThreads());
+        assertTrue(p.isTrafficDedupEnabled());
+        assertEquals(600, p.getTrafficDedupWindowSeconds());
+        assertEquals(50_000, p.getTrafficDedupMaxEntries());
+        assertEquals("", p.getInitiatorLimitsCsv());
+        assertTrue(p.isNearDupEnabled());
+        assertEquals(3, p.getNearDupMaxDistance());
+        assertEquals(3, p.getNearDupRepresentatives());
+        assertEquals(0, p.getThrottleBytesPerSecond());
+        assertEquals(0, p.getThrottleRequestsPerSecond());
+        assertFalse(p.isServersReplicate());
+    }
+
+    @Test
+    @DisplayName("Server URL list splits on commas and whitespace and drops repeats")
+    void serverUrlList() {
+        ShyHurricaneOptionsParam p = new ShyHurricaneOptionsParam();
+        initializeConfig(p);
+        p.setMcpServerUrl("http://a:8000/, http://b:8000/\nhttp://a:8000/,");
+        assertEquals(List.of("http://a:8000/", "http://b:8000/"), p.getMcpServerUrls());
+        p.setMcpServerUrl("http://a:8000/");
+        assertEquals(List.of("http://a:8000/"), p.getMcpServerUrls());
+    }
+
+    @Test
+    @DisplayName("Compression level is kept within what Deflater accepts")
+    void compressionLevelIsClamped() throws Exception {
+        ShyHurricaneOptionsParam p = new ShyHurricaneOptionsParam();
+        initializeConfig(p);
+        p.setCompressionLevel(42);
+        assertEquals(9, p.getCompressionLevel());
+        p.setCompressionLevel(-1);
+        assertEquals(1, p.getCompressionLevel());
+
+        Method getConfigM = Class.forName("org.parosproxy.paros.common.AbstractParam")
+                .getDeclaredMethod("getConfig");
+        getConfigM.setAccessible(true);
+        ((HierarchicalConfiguration) getConfigM.invoke(p)).setProperty("shyhurricane.compression.level", 10);
+        p.parse();
+        assertEquals(9, p.getCompressionLevel());
+    }
+
+    @Test
+    @DisplayName("Queue capacity is kept within what the options panel accepts")
+    void indexQueueCapacityIsClamped() throws Exception {
+        ShyHurricaneOptionsParam p = new ShyHurricaneOptionsParam();
+        initializeConfig(p);
+        p.setIndexQueueCapacity(0);
+        assertEquals(1, p.getIndexQueueCapacity());
+        p.setIndexQueueCapacity(5_000_000);
+        assertEquals(1_000_000, p.getIndexQueueCapacity());
+
+        Method getConfigM = Class.forName("org.parosproxy.paros.common.AbstractParam")
+                .getDeclaredMethod("getConfig");
+        getConfigM.setAccessible(true);
+        ((HierarchicalConfiguration) getConfigM.invoke(p)).setProperty("shyhurricane.index.queue.capacity", -3);
+        p.parse();
+        assertEquals(1, p.getIndexQueueCapacity());
     }
 
     @Test
@@ -90,6 +183,51 @@ class ShyHurricaneOptionsParamTest {
         cfgH.setProperty("shyhurricane.minRisk", Alert.RISK_HIGH);
         cfgH.setProperty("shyhurricane.initiators.all", false);
         cfgH.setProperty("shyhurricane.initiators.selected", "7,8,9");
+        cfgH.setProperty("shyhurricane.index.batch.enabled", false);
+        cfgH.setProperty("shyhurricane.index.batch.maxEntries", 50);
+        cfgH.setProperty("shyhurricane.index.batch.maxBytes", 4096);
+        cfgH.setProperty("shyhurricane.index.batch.lingerMs", 250);
+        cfgH.setProperty("shyhurricane.http.connectTimeoutMs", 1000);
+        cfgH.setProperty("shyhurricane.http.requestTimeoutMs", 2000);
+        cfgH.setProperty("shyhurricane.http.maxInFlight", 3);
+        cfgH.setProperty("shyhurricane.http.http2", true);
+        cfgH.setProperty("shyhurricane.body.request.maxBytes", 0);
+        cfgH.setProperty("shyhurricane.body.response.maxBytes", 65536);
+        cfgH.setProperty("shyhurricane.body.limitPolicy", "head_tail");
+        cfgH.setProperty("shyhurricane.compression", "GZIP");
+        cfgH.setProperty("shyhurricane.compression.minBytes", 512);
+        cfgH.setProperty("shyhurricane.compression.level", 1);
+        cfgH.setProperty("shyhurricane.alerts.dedup.ttlMinutes", 30);
+        cfgH.setProperty("shyhurricane.alerts.dedup.maxEntries", 500);
+        cfgH.setProperty("shyhurricane.findings.flush.maxDelayMs", 5000);
+        cfgH.setProperty("shyhurricane.findings.flush.highRiskDelayMs", 200);
+        cfgH.setProperty("shyhurricane.findings.flush.batchSize", 10);
+        cfgH.setProperty("shyhurricane.findings.flush.minIntervalMs", 300);
+        cfgH.setProperty("shyhurricane.spool.enabled", false);
+        cfgH.setProperty("shyhurricane.spool.maxMegabytes", 16);
+        cfgH.setProperty("shyhurricane.retry.maxAttempts", 2);
+        cfgH.setProperty("shyhurricane.retry.initialBackoffMs", 50);
+        cfgH.setProperty("shyhurricane.retry.maxBackoffMs", 1000);
+        cfgH.setProperty("shyhurricane.breaker.failureThreshold", 2);
+        cfgH.setProperty("shyhurricane.breaker.openMs", 1000);
+        cfgH.setProperty("shyhurricane.index.queue.capacity", 500);
+        cfgH.setProperty("shyhurricane.index.queue.policy", "drop_oldest");
+        cfgH.setProperty("shyhurricane.index.queue.blockTimeoutMs", 20);
+        cfgH.setProperty("shyhurricane.findings.batch.enabled", false);
+        cfgH.setProperty("shyhurricane.findings.batch.maxEntries", 20);
+        cfgH.setProperty("shyhurricane.findings.batch.maxBytes", 65536);
+        cfgH.setProperty("shyhurricane.index.senders", 2);
+        cfgH.setProperty("shyhurricane.http.virtualThreads", true);
+        cfgH.setProperty("shyhurricane.traffic.dedup.enabled", false);
+        cfgH.setProperty("shyhurricane.traffic.dedup.windowSeconds", 60);
+        cfgH.setProperty("shyhurricane.traffic.dedup.maxEntries", 1000);
+        cfgH.setProperty("shyhurricane.initiators.limits", "2:10:50");
+        cfgH.setProperty("shyhurricane.traffic.nearDup.enabled", false);
+        cfgH.setProperty("shyhurricane.traffic.nearDup.maxDistance", 5);
+        cfgH.setProperty("shyhurricane.traffic.nearDup.representatives", 1);
+        cfgH.setProperty("shyhurricane.http.throttle.bytesPerSecond", 1048576);
+        cfgH.setProperty("shyhurricane.http.throttle.requestsPerSecond", 20);
+        cfgH.setProperty("shyhurricane.servers.replicate", true);
 
         // Now parse and verify values loaded
         p.parse();
@@ -102,6 +240,52 @@ class ShyHurricaneOptionsParamTest {
         assertEquals("7,8,9", p.getInitiatorsSelectedCsv());
         assertTrue(p.isInitiatorSelected(8));
         assertFalse(p.isInitiatorSelected(10));
+        assertFalse(p.isIndexBatchEnabled());
+        assertEquals(50, p.getIndexBatchMaxEntries());
+        assertEquals(4096, p.getIndexBatchMaxBytes());
+        assertEquals(250, p.getIndexBatchLingerMillis());
+        assertEquals(1000, p.getConnectTimeoutMillis());
+        assertEquals(2000, p.getRequestTimeoutMillis());
+        assertEquals(3, p.getMaxInFlightRequests());
+        assertTrue(p.isHttp2Enabled());
+        assertEquals(0, p.getRequestBodyMaxBytes());
+        assertEquals(65536, p.getResponseBodyMaxBytes());
+        assertEquals(BodyLimitPolicy.HEAD_TAIL, p.getBodyLimitPolicy());
+        assertEquals(Compression.GZIP, p.getCompression());
+        assertEquals(512, p.getCompressionMinBytes());
+        assertEquals(1, p.getCompressionLevel());
+        assertEquals(30, p.getAlertDedupTtlMinutes());
+        assertEquals(500, p.getAlertDedupMaxEntries());
+        assertEquals(5000, p.getFindingsFlushMaxDelayMillis());
+        assertEquals(200, p.getFindingsFlushHighRiskDelayMillis());
+        assertEquals(10, p.getFindingsFlushBatchSize());
+        assertEquals(300, p.getFindingsFlushMinIntervalMillis());
+        assertFalse(p.isSpoolEnabled());
+        assertEquals(16, p.getSpoolMaxMegabytes());
+        assertEquals(2, p.getRetryMaxAttempts());
+        assertEquals(50, p.getRetryInitialBackoffMillis());
+        assertEquals(1000, p.getRetryMaxBackoffMillis());
+        assertEquals(2, p.getBreakerFailureThreshold());
+        assertEquals(1000, p.getBreakerOpenMillis());
+        assertEquals(500, p.getIndexQueueCapacity());
+        assertEquals(BackpressurePolicy.DROP_OLDEST, p.getBackpressurePolicy());
+        assertEquals(20, p.getIndexQueueBlockTimeoutMillis());
+        assertFalse(p.isFindingsBatchEnabled());
+        assertEquals(20, p.getFindingsBatchMaxEntries());
+        assertEquals(65536, p.getFindingsBatchMaxBytes());
+        assertEquals(2, p.getIndexSenders());
+        assertTrue(p.isVirtualThreads());
+        assertFalse(p.isTrafficDedupEnabled());
+        assertEquals(60, p.getTrafficDedupWindowSeconds());
+        assertEquals(1000, p.getTrafficDedupMaxEntries());
+        assertEquals("2:10:50", p.getInitiatorLimitsCsv());
+        assertEquals(new InitiatorLimits.Limit(10, 50), p.getCaptureConfig().getInitiatorLimits().get(2));
+        assertFalse(p.isNearDupEnabled());
+        assertEquals(5, p.getNearDupMaxDistance());
+        assertEquals(1, p.getNearDupRepresentatives());
+        assertEquals(1048576, p.getThrottleBytesPerSecond());
+        assertEquals(20, p.getThrottleRequestsPerSecond());
+        assertTrue(p.isServersReplicate());
     }
 
     private static void initializeConfig(ShyHurricaneOptionsParam param) {
@@ -0,0 +1,42 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstThenRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, 0));
+        }
+        assertFalse(bucket.tryAcquire(1, 0));
+
+        // 10 per second is one every 100 ms
+        assertFalse(bucket.tryAcquire(1, SECOND / 20));
+        assertTrue(bucket.tryAcquire(1, SECOND / 10));
+        assertFalse(bucket.tryAcquire(1, SECOND / 10));
+    }
+
+    @Test
+    void refillIsCappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(100, 3, 0);
+        assertTrue(bucket.tryAcquire(3, 0));
+        assertFalse(bucket.tryAcquire(4, 60 * SECOND));
+        assertTrue(bucket.tryAcquire(3, 60 * SECOND));
+    }
+
+    @Test
+    void reserve_goesIntoDebt() {
+        TokenBucket bucket = new TokenBucket(10, 10, 0);
+        assertEquals(0, bucket.reserve(10, 0));
+        assertEquals(SECOND / 2, bucket.reserve(5, 0));
+        assertEquals(1.5, bucket.utilization(0), 1e-9);
+        assertFalse(bucket.tryAcquire(1, SECOND / 2));
+        assertTrue(bucket.tryAcquire(1, SECOND / 2 + SECOND / 10));
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.parosproxy.paros.network.HttpResponseHeader;
+
+class TrafficDeduplicatorTest {
+
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+
+    private TrafficDeduplicator deduplicator(boolean enabled, int windowSeconds) {
+        return new TrafficDeduplicator(new ShyHurricaneOptionsParam() {
+            @Override public boolean isTrafficDedupEnabled() { return enabled; }
+            @Override public int getTrafficDedupWindowSeconds() { return windowSeconds; }
+            @Override public int getTrafficDedupMaxEntries() { return 1000; }
+        }, metrics);
+    }
+
+    /**
+     * Checks the message and records it as forwarded unless it's a repeat.
+     *
+     * @return true if it's a repeat
+     */
+    private static boolean offer(TrafficDeduplicator dedup, HttpMessage msg, long nowMillis) {
+        long key = dedup.key(msg);
+        if (dedup.isRepeat(msg, key, nowMillis)) {
+            return true;
+        }
+        dedup.forwarded(key, nowMillis);
+        return false;
+    }
+
+    private static HttpMessage message(String method, String url, int status, String body) throws Exception {
+        HttpMessage msg = new HttpMessage();
+        msg.setRequestHeader(new HttpRequestHeader(method + " " + url + " HTTP/1.1\r\n\r\n"));
+        HttpResponseHeader res = new HttpResponseHeader();
+        res.setStatusCode(status);
+        msg.setResponseHeader(res);
+        msg.setResponseBody(body);
+        return msg;
+    }
+
+    @Test
+    void hash_coversMethodUrlStatusAndBody() throws Exception {
+        long base = TrafficDeduplicator.hash(message("GET", "http://example.com/a?x=1", 200, "hello"));
+
+        assertEquals(base, TrafficDeduplicator.hash(message("GET", "http://EXAMPLE.com/a?x=1", 200, "hello")));
+        assertNotEquals(base, TrafficDeduplicator.hash(message("POST", "http://example.com/a?x=1", 200, "hello")));
+        assertNotEquals(base, TrafficDeduplicator.hash(message("GET", "http://example.com/a?x=2", 200, "hello")));
+        assertNotEquals(base, TrafficDeduplicator.hash(message("GET", "http://example.com/b?x=1", 200, "hello")));
+        assertNotEquals(base, TrafficDeduplicator.hash(message("GET", "http://example.com/a?x=1", 404, "hello")));
+        assertNotEquals(base, TrafficDeduplicator.hash(message("GET", "http://example.com/a?x=1", 200, "hellO")));
+    }
+
+    @Test
+    void repeatsWithinWindowAreSkippedAndCounted() throws Exception {
+        TrafficDeduplicator dedup = deduplicator(true, 60);
+
+        assertFalse(offer(dedup, message("GET", "http://example.com/", 200, "page"), 0));
+        assertTrue(offer(dedup, message("GET", "http://example.com/", 200, "page"), 30_000));
+        assertFalse(offer(dedup, message("GET", "http://example.com/", 200, "changed"), 30_000));
+        // the window counts from when the response was forwarded
+        assertFalse(offer(dedup, message("GET", "http://example.com/", 200, "page"), 60_000));
+
+        assertEquals(1L, metrics.get(ForwarderMetrics.Counter.SKIPPED_DUPLICATE));
+        assertEquals(4L, metrics.get(ForwarderMetrics.Counter.SKIPPED_DUPLICATE_BYTES));
+    }
+
+    @Test
+    void messagesNotForwarded_doNotSuppressRepeats() throws Exception {
+        TrafficDeduplicator dedup = deduplicator(true, 60);
+        HttpMessage msg = message("GET", "http://example.com/", 200, "page");
+
+        long key = dedup.key(msg);
+        assertFalse(dedup.isRepeat(msg, key, 0));
+        // dropped by the queue, so not forwarded
+        assertFalse(dedup.isRepeat(msg, key, 1000));
+        dedup.forwarded(key, 1000);
+        assertTrue(dedup.isRepeat(msg, key, 2000));
+        assertEquals(1, dedup.size());
+    }
+
+    @Test
+    void disabled_neverSkips() throws Exception {
+        TrafficDeduplicator dedup = deduplicator(false, 60);
+        assertFalse(offer(dedup, message("GET", "http://example.com/", 200, "page"), 0));
+        assertFalse(offer(dedup, message("GET", "http://example.com/", 200, "page"), 0));
+        assertEquals(0, dedup.size());
+    }
+
+    @Test
+    void hash_coversTheWholeOfLargeBodies() throws Exception {
+        int size = 256 * 1024;
+        String body = "a".repeat(size);
+        long base = TrafficDeduplicator.hash(message("GET", "http://example.com/", 200, body));
+
+        String middle = body.substring(0, size / 2) + "b" + body.substring(size / 2 + 1);
+        assertNotEquals(base, TrafficDeduplicator.hash(message("GET", "http://example.com/", 200, middle)));
+    }
+}
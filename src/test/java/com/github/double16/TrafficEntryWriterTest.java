@@ -0,0 +1,138 @@
+package com.github.double16;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.parosproxy.paros.network.HttpResponseHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficEntryWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static JsonNode write(TrafficEntry entry) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrafficEntryWriter.write(entry, out);
+        return MAPPER.readTree(out.toByteArray());
+    }
+
+    private static HttpMessage message() throws Exception {
+        HttpMessage msg = new HttpMessage();
+        msg.setRequestHeader(new HttpRequestHeader("POST http://example.com/api?q=1 HTTP/1.1\r\n" +
+                "X-FOO: a\r\n" +
+                "x-foo: b\r\n" +
+                "Content-Type: Text/Plain\r\n" +
+                "\r\n"));
+        msg.setRequestBody("ping");
+        HttpResponseHeader res = new HttpResponseHeader();
+        res.setStatusCode(201);
+        res.setHeader("Content-Type", "application/json");
+        msg.setResponseHeader(res);
+        msg.setResponseBody("{\"pong\":\"é\"}");
+        return msg;
+    }
+
+    @Test
+    void headers_lowercasedAndDuplicatesMerged() throws Exception {
+        JsonNode headers = write(TrafficEntry.capture(message(), new ShyHurricaneOptionsParam().getCaptureConfig())).path("request").path("headers");
+
+        assertEquals("a;b", headers.path("x-foo").asText());
+        assertEquals("Text/Plain", headers.path("content-type").asText());
+        // Ensure no original-case keys exist
+        assertFalse(headers.has("X-FOO"));
+        assertFalse(headers.has("Content-Type"));
+        assertEquals(2, headers.size());
+    }
+
+    @Test
+    void write_producesIndexDocument() throws Exception {
+        JsonNode json = write(TrafficEntry.capture(message(), new ShyHurricaneOptionsParam().getCaptureConfig()));
+
+        assertTrue(json.path("timestamp").asText().endsWith("Z"));
+        assertEquals("POST", json.path("request").path("method").asText());
+        assertEquals("http://example.com/api?q=1", json.path("request").path("endpoint").asText());
+        assertEquals("ping", json.path("request").path("body").asText());
+        assertEquals(201, json.path("response").path("status_code").asInt());
+        assertEquals("application/json", json.path("response").path("headers").path("content-type").asText());
+        assertEquals("{\"pong\":\"é\"}", json.path("response").path("body").asText());
+        assertTrue(json.path("response").has("rtt"));
+    }
+
+    @Test
+    void write_omitsUndecodableBodies() throws Exception {
+        TrafficEntry entry = new TrafficEntry(0, "GET", "http://example.com/", List.of(), null, 200, List.of(), null, 1500);
+        JsonNode json = write(entry);
+
+        assertFalse(json.path("request").has("body"));
+        assertFalse(json.path("response").has("body"));
+        assertEquals(1.5, json.path("response").path("rtt").asDouble(), 0.0001);
+        assertEquals("1970-01-01T00:00:00Z", json.path("timestamp").asText());
+    }
+
+    private static CaptureConfig limit(int maxBytes, BodyLimitPolicy policy) {
+        return new ShyHurricaneOptionsParam() {
+            @Override public int getRequestBodyMaxBytes() { return 0; }
+            @Override public int getResponseBodyMaxBytes() { return maxBytes; }
+            @Override public BodyLimitPolicy getBodyLimitPolicy() { return policy; }
+        }.getCaptureConfig();
+    }
+
+    private static HttpMessage largeMessage() throws Exception {
+        HttpMessage msg = message();
+        msg.getResponseHeader().setHeader("Content-Type", "text/plain; charset=UTF-8");
+        msg.setResponseBody("0123456789abcdefghij");
+        return msg;
+    }
+
+    @Test
+    void bodyWithinLimit_isNotMarked() throws Exception {
+        JsonNode response = write(TrafficEntry.capture(largeMessage(), limit(20, BodyLimitPolicy.TRUNCATE))).path("response");
+
+        assertEquals("0123456789abcdefghij", response.path("body").asText());
+        assertFalse(response.has("truncated"));
+        assertFalse(response.has("original_length"));
+    }
+
+    @Test
+    void bodyOverLimit_truncate() throws Exception {
+        JsonNode json = write(TrafficEntry.capture(largeMessage(), limit(8, BodyLimitPolicy.TRUNCATE)));
+        JsonNode response = json.path("response");
+
+        assertEquals("01234567", response.path("body").asText());
+        assertTrue(response.path("truncated").asBoolean());
+        assertEquals(20, response.path("original_length").asInt());
+        // request limit is disabled
+        assertEquals("ping", json.path("request").path("body").asText());
+        assertFalse(json.path("request").has("truncated"));
+    }
+
+    @Test
+    void bodyOverLimit_headTail() throws Exception {
+        JsonNode response = write(TrafficEntry.capture(largeMessage(), limit(8, BodyLimitPolicy.HEAD_TAIL))).path("response");
+
+        assertEquals("0123" + TrafficEntry.HEAD_TAIL_SEPARATOR + "ghij", response.path("body").asText());
+        assertTrue(response.path("truncated").asBoolean());
+        assertEquals(20, response.path("original_length").asInt());
+    }
+
+    @Test
+    void bodyOverLimit_hashOnly() throws Exception {
+        TrafficEntry entry = TrafficEntry.capture(largeMessage(), limit(8, BodyLimitPolicy.HASH));
+        // hashed at capture, the queued entry doesn't keep the body
+        assertNull(entry.responseBody().text());
+        assertEquals("6bc14bdc4517a7a682c6910de2e2946eb8e1ecd04090728fef6d092a7ceb62c5", entry.responseBody().sha256());
+        JsonNode response = write(entry).path("response");
+
+        assertFalse(response.has("body"));
+        assertEquals("6bc14bdc4517a7a682c6910de2e2946eb8e1ecd04090728fef6d092a7ceb62c5",
+                response.path("body_sha256").asText());
+        assertTrue(response.path("truncated").asBoolean());
+        assertEquals(20, response.path("original_length").asInt());
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.double16;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class UploadThrottleTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong();
+    private final ForwarderMetrics metrics = new ForwarderMetrics();
+
+    private UploadThrottle throttle(int bytesPerSecond, int requestsPerSecond) {
+        return new UploadThrottle(new ShyHurricaneOptionsParam() {
+            @Override public int getThrottleBytesPerSecond() { return bytesPerSecond; }
+            @Override public int getThrottleRequestsPerSecond() { return requestsPerSecond; }
+        }, metrics, now::get);
+    }
+
+    @Test
+    void unlimited_neverWaits() throws Exception {
+        UploadThrottle throttle = throttle(0, 0);
+        for (int i = 0; i < 100; i++) {
+            throttle.acquire(1_000_000);
+        }
+        assertEquals(0.0, throttle.utilization());
+        assertEquals(0L, metrics.get(ForwarderMetrics.Counter.HTTP_THROTTLED));
+    }
+
+    @Test
+    void bytesPerSecond_smoothsBursts() {
+        UploadThrottle throttle = throttle(1000, 0);
+        assertEquals(0, throttle.reserve(600));
+        assertEquals(0.6, throttle.utilization(), 0.001);
+        assertEquals(0, throttle.reserve(400));
+        // the bucket is empty, 500 bytes take half a second
+        assertEquals(SECOND / 2, throttle.reserve(500));
+        assertEquals(150, metrics.get(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION));
+        assertEquals(1.5, throttle.utilization(), 0.001);
+
+        now.addAndGet(SECOND / 2);
+        assertEquals(1.0, throttle.utilization(), 0.001);
+        assertEquals(100, metrics.get(ForwarderMetrics.Gauge.THROTTLE_UTILIZATION));
+        // a body larger than the burst still goes through, after the debt is paid
+        assertEquals(3 * SECOND, throttle.reserve(3000));
+    }
+
+    @Test
+    void requestsPerSecond_isTheLongerWait() {
+        UploadThrottle throttle = throttle(1_000_000, 2);
+        assertEquals(0, throttle.reserve(10));
+        assertEquals(0, throttle.reserve(10));
+        assertEquals(SECOND / 2, throttle.reserve(10));
+        assertEquals(SECOND, throttle.reserve(10));
+    }
+
+    @Test
+    void acquire_sleepsAndCounts() throws Exception {
+        UploadThrottle throttle = throttle(100_000, 0);
+        throttle.acquire(100_000);
+        long start = System.nanoTime();
+        throttle.acquire(1000);
+        assertTrue(System.nanoTime() - start >= SECOND / 100);
+        assertEquals(1L, metrics.get(ForwarderMetrics.Counter.HTTP_THROTTLED));
+        assertEquals(1L, metrics.histogram(ForwarderMetrics.Timer.THROTTLE_WAIT).getCount());
+    }
+}